@@ -0,0 +1,67 @@
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the first place each distinct chunk hash was seen, so repeated
+ * chunks can be detected within and across files.
+ **/
+public class ChunkDeduplicator {
+    // Where a chunk was first seen.
+    public static final class Location {
+        private final Path path;
+        private final long offset;
+
+        Location(Path path, long offset) {
+            this.path = path;
+            this.offset = offset;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    private final int hashBytes;
+    private final Map<ByteBuffer, Location> seen = new HashMap<>();
+    private long chunks;
+    private long duplicateChunks;
+    private long duplicateBytes;
+
+    public ChunkDeduplicator(int hashBytes) {
+        this.hashBytes = hashBytes;
+    }
+
+    /**
+     * Record one chunk.
+     * @return
+     *   where an identical chunk was seen first, or null if this is the first
+     **/
+    public Location record(Path path, long offset, int length, byte[] hash, int off) {
+        chunks++;
+        ByteBuffer key = ByteBuffer.wrap(java.util.Arrays.copyOfRange(hash, off, off + hashBytes));
+        Location first = seen.putIfAbsent(key, new Location(path, offset));
+        if (first != null) {
+            duplicateChunks++;
+            duplicateBytes += length;
+        }
+        return first;
+    }
+
+    public long getChunks() {
+        return chunks;
+    }
+
+    public long getDuplicateChunks() {
+        return duplicateChunks;
+    }
+
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Splits any file, text or binary, into byte-chunk leaves instead of lines.
+ *
+ * Fixed mode cuts a chunk every chunkBytes bytes. Content-defined mode runs a
+ * gear rolling hash over the bytes and cuts where the hash falls below a
+ * threshold set from the spread between minBytes and averageBytes, giving
+ * chunks of about averageBytes, never shorter than minBytes (except at the
+ * end of the file) and never longer than maxBytes. Because cut points follow
+ * the content, an insertion early in a file only changes the chunks around
+ * it, and identical runs of bytes in different files hash to the same leaves.
+ **/
+public class ChunkedLeafScanner {
+    public static final int MIN_CHUNK_BYTES = 4 * 1024;
+    public static final int MAX_CHUNK_BYTES = 1024 * 1024;
+
+    // Receives each chunk's position, length and leaf hash (digestLength() bytes at off), in file order.
+    public interface ChunkSink {
+        void chunk(long offset, int length, byte[] hash, int off);
+    }
+
+    // Fixed per-byte values for the gear hash; seeded so chunk boundaries are stable across runs.
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4D65726B6C65L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final MerkleHasher hashing;
+    private final boolean contentDefined;
+    private final int minBytes;
+    private final int maxBytes;
+    private final long threshold; // Content-defined mode cuts where the hash, unsigned, is below this
+    private final byte[] leafHash;
+
+    private ChunkedLeafScanner(MerkleHasher hashing, boolean contentDefined, int minBytes, int averageBytes,
+                               int maxBytes) {
+        this.hashing = hashing;
+        this.contentDefined = contentDefined;
+        this.minBytes = minBytes;
+        this.maxBytes = maxBytes;
+        this.leafHash = new byte[hashing.digestLength()];
+        // A cut chance of 1 / (averageBytes - minBytes) per byte past minBytes makes the mean about averageBytes.
+        int spread = averageBytes - minBytes;
+        this.threshold = spread <= 0 ? 0 : Long.divideUnsigned(-1L, spread);
+    }
+
+    /**
+     * Cut a chunk every chunkBytes bytes.
+     * @exception IllegalArgumentException
+     *   Indicates that chunkBytes is outside MIN_CHUNK_BYTES..MAX_CHUNK_BYTES.
+     **/
+    public static ChunkedLeafScanner fixed(MerkleHasher hashing, int chunkBytes) {
+        checkSize(chunkBytes);
+        return new ChunkedLeafScanner(hashing, false, chunkBytes, chunkBytes, chunkBytes);
+    }
+
+    /**
+     * Cut chunks at content-defined points, averaging about averageBytes,
+     * bounded by averageBytes / 4 and averageBytes * 4.
+     * @exception IllegalArgumentException
+     *   Indicates that averageBytes is outside MIN_CHUNK_BYTES..MAX_CHUNK_BYTES.
+     **/
+    public static ChunkedLeafScanner contentDefined(MerkleHasher hashing, int averageBytes) {
+        checkSize(averageBytes);
+        return new ChunkedLeafScanner(hashing, true, averageBytes / 4, averageBytes, 4 * averageBytes);
+    }
+
+    private static void checkSize(int bytes) {
+        if (bytes < MIN_CHUNK_BYTES || bytes > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("chunk size " + bytes + " is outside "
+                    + MIN_CHUNK_BYTES + ".." + MAX_CHUNK_BYTES);
+        }
+    }
+
+    // Hash every chunk of the file, in order.
+    public void scan(Path path, ChunkSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Regions hold many chunks; a chunk cut off by a region's end is rescanned in the next one.
+            long regionBytes = Math.max(64L << 20, 2L * maxBytes);
+            long pos = 0;
+            while (pos < size) {
+                int length = (int) Math.min(regionBytes, size - pos);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                boolean last = pos + length == size;
+
+                int start = 0;
+                while (start < length) {
+                    int end = contentDefined ? nextCut(region, start, length) : start + maxBytes;
+                    if (end > length) {
+                        if (!last) {
+                            break; // Finish this chunk in the next region.
+                        }
+                        end = length;
+                    }
+                    hashing.hashLeaf(region.slice(start, end - start), leafHash, 0);
+                    sink.chunk(pos + start, end - start, leafHash, 0);
+                    start = end;
+                }
+                pos += start;
+            }
+        }
+    }
+
+    // End of the content-defined chunk starting at start, or a value past limit if the region ends first.
+    private int nextCut(MappedByteBuffer region, int start, int limit) {
+        int end = Math.min(limit, start + maxBytes);
+        // The hash only needs to cover the last 64 bytes before a cut point.
+        long hash = 0;
+        for (int i = Math.max(start, start + minBytes - 64); i < end; i++) {
+            hash = (hash << 1) + GEAR[region.get(i) & 0xFF];
+            if (i + 1 - start >= minBytes && Long.compareUnsigned(hash, threshold) < 0) {
+                return i + 1;
+            }
+        }
+        return end == start + maxBytes ? end : limit + 1;
+    }
+}
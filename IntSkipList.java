@@ -0,0 +1,280 @@
+import java.util.SplittableRandom;
+
+/**
+ * A sorted multiset of ints kept in an indexable skip list. Every node
+ * carries its value unboxed and, on each of its levels, a forward link and
+ * the number of elements that link skips, so insert, remove, search, rank,
+ * select and range counts all take O(log n) expected time. Equal values are
+ * kept in insertion order.
+ *
+ * fromArray and addAll sort the values first and then link every level in
+ * one pass, with node heights following the positions' trailing zero bits,
+ * which is O(n log n) for n values instead of n separate inserts.
+ *
+ * Not safe for use by several threads at once.
+ **/
+public class IntSkipList {
+    // Enough levels for 2^32 elements at one promotion in two.
+    private static final int MAX_LEVEL = 32;
+
+    private static final class Node {
+        final int value;
+        final Node[] next;
+        final int[] width; // width[i] = positions from this node to next[i] (to size + 1 when null)
+
+        Node(int value, int levels) {
+            this.value = value;
+            this.next = new Node[levels];
+            this.width = new int[levels];
+        }
+    }
+
+    private final SplittableRandom random;
+    private Node head = new Node(Integer.MIN_VALUE, MAX_LEVEL);
+    private int levels = 1; // Levels in use; head links above these are empty
+    private int size;
+
+    public IntSkipList() {
+        this(new SplittableRandom());
+    }
+
+    // A list whose node heights come from random, e.g. a seeded one for repeatable layouts.
+    public IntSkipList(SplittableRandom random) {
+        this.random = random;
+        clear();
+    }
+
+    /**
+     * A list holding the given values, sorted and linked in one pass.
+     * The array is not changed.
+     **/
+    public static IntSkipList fromArray(int[] values) {
+        IntSkipList list = new IntSkipList();
+        list.addAll(values);
+        return list;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = new Node(Integer.MIN_VALUE, MAX_LEVEL);
+        java.util.Arrays.fill(head.width, 1);
+        levels = 1;
+        size = 0;
+    }
+
+    // Add value after any equal values already present.
+    public void add(int value) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node node = head;
+        int pos = 0;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].value <= value) {
+                pos += node.width[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+            rank[i] = pos;
+        }
+
+        int height = randomHeight();
+        for (int i = levels; i < height; i++) {
+            update[i] = head;
+            rank[i] = 0;
+        }
+        levels = Math.max(levels, height);
+
+        // The new node takes position pos + 1; every link passing over it grows by one.
+        Node added = new Node(value, height);
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            Node before = i < levels ? update[i] : head;
+            int beforePos = i < levels ? rank[i] : 0;
+            if (i < height) {
+                added.next[i] = before.next[i];
+                added.width[i] = beforePos + before.width[i] - pos;
+                before.next[i] = added;
+                before.width[i] = pos + 1 - beforePos;
+            } else {
+                before.width[i]++;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Add many values at once: they are sorted, merged with the current
+     * elements, and every level is relinked in one pass. The array is not
+     * changed.
+     **/
+    public void addAll(int[] values) {
+        int[] added = values.clone();
+        java.util.Arrays.sort(added);
+        int[] current = toArray();
+        int[] merged = new int[current.length + added.length];
+        int a = 0;
+        int b = 0;
+        for (int k = 0; k < merged.length; k++) {
+            // Existing values go first among equals, as add would place them.
+            merged[k] = b == added.length || (a < current.length && current[a] <= added[b])
+                    ? current[a++] : added[b++];
+        }
+        link(merged);
+    }
+
+    // Relink the whole list over already sorted values.
+    private void link(int[] sorted) {
+        clear();
+        Node[] last = new Node[MAX_LEVEL];
+        int[] lastPos = new int[MAX_LEVEL];
+        java.util.Arrays.fill(last, head);
+        for (int p = 1; p <= sorted.length; p++) {
+            // Position p is on level i when p is a multiple of 2^i.
+            int height = Math.min(MAX_LEVEL, 1 + Integer.numberOfTrailingZeros(p));
+            Node node = new Node(sorted[p - 1], height);
+            for (int i = 0; i < height; i++) {
+                last[i].next[i] = node;
+                last[i].width[i] = p - lastPos[i];
+                last[i] = node;
+                lastPos[i] = p;
+            }
+            levels = Math.max(levels, height);
+        }
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            last[i].width[i] = sorted.length + 1 - lastPos[i];
+        }
+        size = sorted.length;
+    }
+
+    /**
+     * Remove one occurrence of value, the earliest added.
+     * @return
+     *   true if value was present
+     **/
+    public boolean remove(int value) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node node = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].value < value) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+        Node found = node.next[0];
+        if (found == null || found.value != value) {
+            return false;
+        }
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            Node before = i < levels ? update[i] : head;
+            if (i < found.next.length) {
+                before.width[i] += found.width[i] - 1;
+                before.next[i] = found.next[i];
+            } else {
+                before.width[i]--;
+            }
+        }
+        while (levels > 1 && head.next[levels - 1] == null) {
+            levels--;
+        }
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        Node node = lastBelow(value);
+        return node.next[0] != null && node.next[0].value == value;
+    }
+
+    // Number of elements less than value; also the index of value's first occurrence if present.
+    public int rank(int value) {
+        Node node = head;
+        int pos = 0;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].value < value) {
+                pos += node.width[i];
+                node = node.next[i];
+            }
+        }
+        return pos;
+    }
+
+    // Number of elements less than or equal to value.
+    public int rankAtMost(int value) {
+        Node node = head;
+        int pos = 0;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].value <= value) {
+                pos += node.width[i];
+                node = node.next[i];
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * The element at index in sorted order.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that index is negative or not below size().
+     **/
+    public int get(int index) {
+        java.util.Objects.checkIndex(index, size);
+        Node node = head;
+        int pos = 0;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && pos + node.width[i] <= index + 1) {
+                pos += node.width[i];
+                node = node.next[i];
+            }
+        }
+        return node.value;
+    }
+
+    // Number of elements in [from, to], inclusive.
+    public int countRange(int from, int to) {
+        return from > to ? 0 : rankAtMost(to) - rank(from);
+    }
+
+    // The elements in [from, to], inclusive, in sorted order.
+    public int[] range(int from, int to) {
+        int[] answer = new int[countRange(from, to)];
+        Node node = lastBelow(from).next[0];
+        for (int k = 0; k < answer.length; k++) {
+            answer[k] = node.value;
+            node = node.next[0];
+        }
+        return answer;
+    }
+
+    // All elements in sorted order.
+    public int[] toArray() {
+        int[] answer = new int[size];
+        Node node = head.next[0];
+        for (int k = 0; k < size; k++) {
+            answer[k] = node.value;
+            node = node.next[0];
+        }
+        return answer;
+    }
+
+    // The last node holding a value less than value, or the head.
+    private Node lastBelow(int value) {
+        Node node = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].value < value) {
+                node = node.next[i];
+            }
+        }
+        return node;
+    }
+
+    // 1 plus the number of trailing heads in a run of fair coin flips.
+    private int randomHeight() {
+        return Math.min(MAX_LEVEL, 1 + Integer.numberOfTrailingZeros(random.nextInt()));
+    }
+}
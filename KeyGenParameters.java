@@ -0,0 +1,80 @@
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Settings for KnapsackKeyGenerator: how many key elements to generate, how
+ * the superincreasing sequence grows, and where random numbers come from.
+ * Instances are immutable; the with methods return modified copies.
+ **/
+public final class KeyGenParameters {
+    // The element count genKeys has always used: 640 elements, 80 message bytes per block.
+    public static final int DEFAULT_KEY_LENGTH = 640;
+
+    // Shared by every default parameter set so a generator never reseeds per key.
+    private static final Random DEFAULT_RANDOM = new SecureRandom();
+
+    /**
+     * How each element of the superincreasing sequence w is chosen.
+     **/
+    public enum Growth {
+        // w[i] = 7^i, the fixed sequence genKeys has always produced.
+        POWERS_OF_SEVEN,
+        // w[i] = sum of w[0..i-1] + a random value of up to RANDOM_SPREAD_BITS bits, plus one.
+        RANDOM
+    }
+
+    // Bits of slack added above the running sum by the RANDOM growth strategy.
+    public static final int RANDOM_SPREAD_BITS = 64;
+
+    private final int keyLength;
+    private final Growth growth;
+    private final Random random;
+
+    /**
+     * @param keyLength
+     *   number of elements in w and b; must be a positive multiple of 8
+     * @param growth
+     *   strategy for the superincreasing sequence
+     * @param random
+     *   source of the multiplier and of RANDOM growth
+     * @exception IllegalArgumentException
+     *   Indicates that keyLength is not a positive multiple of 8.
+     **/
+    public KeyGenParameters(int keyLength, Growth growth, Random random) {
+        if (keyLength <= 0 || keyLength % 8 != 0) {
+            throw new IllegalArgumentException("keyLength must be a positive multiple of 8");
+        }
+        this.keyLength = keyLength;
+        this.growth = growth;
+        this.random = random;
+    }
+
+    // 640 powers of seven with a shared SecureRandom: the keys genKeys() produces.
+    public static KeyGenParameters defaults() {
+        return new KeyGenParameters(DEFAULT_KEY_LENGTH, Growth.POWERS_OF_SEVEN, DEFAULT_RANDOM);
+    }
+
+    public KeyGenParameters withKeyLength(int newKeyLength) {
+        return new KeyGenParameters(newKeyLength, growth, random);
+    }
+
+    public KeyGenParameters withGrowth(Growth newGrowth) {
+        return new KeyGenParameters(keyLength, newGrowth, random);
+    }
+
+    public KeyGenParameters withRandom(Random newRandom) {
+        return new KeyGenParameters(keyLength, growth, newRandom);
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    public Growth getGrowth() {
+        return growth;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+}
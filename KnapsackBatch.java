@@ -0,0 +1,114 @@
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Batch encryption and decryption over one key. A batch is cut into at most
+ * parallelism contiguous slices and each slice runs as one task on the
+ * executor, so the per-task overhead is paid once per slice rather than once
+ * per message, and decryption reuses one scratch block per slice.
+ **/
+public class KnapsackBatch {
+    private final KnapsackEngine engine;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public KnapsackBatch(KnapsackEngine engine, ExecutorService executor, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism is not positive");
+        }
+        this.engine = engine;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Encrypt each payload as its own framed ciphertext integer.
+     * @exception IllegalArgumentException
+     *   Indicates that a payload is longer than the keys' maxMessageBytes.
+     **/
+    public BigInteger[] encryptAll(byte[][] payloads) {
+        BigInteger[] ciphertexts = new BigInteger[payloads.length];
+        runSlices(payloads.length, (from, to, scratch) -> {
+            for (int i = from; i < to; i++) {
+                ciphertexts[i] = engine.encryptMessage(payloads[i]);
+            }
+        });
+        return ciphertexts;
+    }
+
+    // Encrypt the UTF-8 bytes of each message, as MerkleHellmanKnapsack.encrypt(String) does.
+    public BigInteger[] encryptAll(String[] messages) {
+        BigInteger[] ciphertexts = new BigInteger[messages.length];
+        runSlices(messages.length, (from, to, scratch) -> {
+            for (int i = from; i < to; i++) {
+                ciphertexts[i] = engine.encryptMessage(messages[i].getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return ciphertexts;
+    }
+
+    // Decrypt each ciphertext back to exactly the payload given to encryptAll.
+    public byte[][] decryptAll(BigInteger[] ciphertexts) {
+        byte[][] payloads = new byte[ciphertexts.length][];
+        runSlices(ciphertexts.length, (from, to, scratch) -> {
+            for (int i = from; i < to; i++) {
+                payloads[i] = engine.decryptMessage(ciphertexts[i], scratch);
+            }
+        });
+        return payloads;
+    }
+
+    // Decrypt each ciphertext as MerkleHellmanKnapsack.decrypt does.
+    public String[] decryptAllToStrings(BigInteger[] ciphertexts) {
+        String[] messages = new String[ciphertexts.length];
+        runSlices(ciphertexts.length, (from, to, scratch) -> {
+            for (int i = from; i < to; i++) {
+                messages[i] = new String(engine.decryptMessage(ciphertexts[i], scratch), StandardCharsets.UTF_8);
+            }
+        });
+        return messages;
+    }
+
+    // Work done for the items [from, to) of one slice, with that slice's scratch block.
+    private interface Slice {
+        void run(int from, int to, byte[] scratch);
+    }
+
+    private void runSlices(int n, Slice slice) {
+        int slices = Math.min(n, parallelism);
+        if (slices <= 1) {
+            if (n > 0) {
+                slice.run(0, n, new byte[engine.getKeys().blockBytes()]);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++) {
+            int from = (int) ((long) n * s / slices);
+            int to = (int) ((long) n * (s + 1) / slices);
+            tasks.add(() -> {
+                slice.run(from, to, new byte[engine.getKeys().blockBytes()]);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : executor.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("batch interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
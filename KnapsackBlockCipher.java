@@ -0,0 +1,102 @@
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Block mode for the knapsack cipher. A payload of any length is cut into
+ * key-sized blocks (the last one possibly short), and each block becomes its
+ * own ciphertext integer. Blocks are independent, so ranges of them are
+ * encrypted and decrypted in parallel on a fork-join pool.
+ **/
+public class KnapsackBlockCipher {
+    // Ranges of at most this many blocks are processed on a single thread.
+    public static final int DEFAULT_THRESHOLD = 16;
+
+    private final KnapsackEngine engine;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public KnapsackBlockCipher(KnapsackEngine engine) {
+        this(engine, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public KnapsackBlockCipher(KnapsackEngine engine, ForkJoinPool pool, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold is not positive");
+        }
+        this.engine = engine;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    // Number of ciphertext integers needed for a payload of the given length.
+    public int blockCount(int length) {
+        int blockBytes = engine.getKeys().blockBytes();
+        return (length + blockBytes - 1) / blockBytes;
+    }
+
+    /**
+     * Encrypt a payload as a sequence of ciphertext integers, one per block.
+     * The payload length is not recorded; callers keep it to decrypt.
+     **/
+    public BigInteger[] encrypt(byte[] payload) {
+        BigInteger[] blocks = new BigInteger[blockCount(payload.length)];
+        pool.invoke(new BlockTask(payload, blocks, 0, blocks.length, true));
+        return blocks;
+    }
+
+    /**
+     * Decrypt a sequence of ciphertext integers back into a payload of the
+     * given length.
+     * @exception IllegalArgumentException
+     *   Indicates that length does not match the number of blocks.
+     **/
+    public byte[] decrypt(BigInteger[] blocks, int length) {
+        if (blockCount(length) != blocks.length) {
+            throw new IllegalArgumentException(blocks.length
+                    + " blocks cannot hold a payload of " + length + " bytes");
+        }
+        byte[] payload = new byte[length];
+        pool.invoke(new BlockTask(payload, blocks, 0, blocks.length, false));
+        return payload;
+    }
+
+    // Encrypts or decrypts blocks [from, to), splitting the range in half until it is small enough.
+    private class BlockTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] payload;
+        private final BigInteger[] blocks;
+        private final int from;
+        private final int to;
+        private final boolean encrypting;
+
+        BlockTask(byte[] payload, BigInteger[] blocks, int from, int to, boolean encrypting) {
+            this.payload = payload;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.encrypting = encrypting;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BlockTask(payload, blocks, from, mid, encrypting),
+                        new BlockTask(payload, blocks, mid, to, encrypting));
+                return;
+            }
+            int blockBytes = engine.getKeys().blockBytes();
+            for (int i = from; i < to; i++) {
+                int off = i * blockBytes;
+                int len = Math.min(blockBytes, payload.length - off);
+                if (encrypting) {
+                    blocks[i] = engine.encrypt(payload, off, len);
+                } else {
+                    engine.decrypt(blocks[i], payload, off, len);
+                }
+            }
+        }
+    }
+}
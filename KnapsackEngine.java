@@ -0,0 +1,147 @@
+import java.math.BigInteger;
+
+/**
+ * Encryption core for the Merkle-Hellman knapsack. Message bytes are consumed
+ * bit by bit, most significant bit first, and bit i selects public key element
+ * b[i]. No intermediate binary string is built. When a KnapsackLookupTable
+ * is supplied, bytes it covers are added as one precomputed subset sum.
+ **/
+public final class KnapsackEngine {
+    private final KnapsackKeys keys;
+    private final BigInteger[] w;
+    private final BigInteger[] b;
+    private final KnapsackLookupTable table; // may be null
+    private final int tableWindows;
+
+    public KnapsackEngine(KnapsackKeys keys) {
+        this(keys, null);
+    }
+
+    public KnapsackEngine(KnapsackKeys keys, KnapsackLookupTable table) {
+        this.keys = keys;
+        this.w = keys.privateSequence();
+        this.b = keys.publicKey();
+        this.table = table;
+        this.tableWindows = table == null ? 0 : table.windowCount();
+    }
+
+    public KnapsackKeys getKeys() {
+        return keys;
+    }
+
+    /**
+     * Encrypt len bytes of message starting at off as a single ciphertext integer.
+     * @exception IllegalArgumentException
+     *   Indicates that the bytes do not fit in one key-sized block.
+     **/
+    public BigInteger encrypt(byte[] message, int off, int len) {
+        if (len > keys.blockBytes()) {
+            throw new IllegalArgumentException("message of " + len
+                    + " bytes exceeds the block size of " + keys.blockBytes() + " bytes");
+        }
+        BigInteger ciphert = BigInteger.ZERO;
+        for (int i = 0; i < len; i++) {
+            ciphert = addByte(ciphert, message[off + i] & 0xFF, i);
+        }
+        return ciphert;
+    }
+
+    public BigInteger encrypt(byte[] message) {
+        return encrypt(message, 0, message.length);
+    }
+
+    /**
+     * Encrypt a message as one framed block: a big-endian length header of
+     * keys.lengthHeaderBytes() bytes, then the message bytes. The header lets
+     * decryptMessage return exactly the bytes given here, trailing zeros included.
+     * @exception IllegalArgumentException
+     *   Indicates that the message is longer than keys.maxMessageBytes().
+     **/
+    public BigInteger encryptMessage(byte[] message) {
+        if (message.length > keys.maxMessageBytes()) {
+            throw new IllegalArgumentException("message of " + message.length
+                    + " bytes exceeds the limit of " + keys.maxMessageBytes() + " bytes");
+        }
+        int header = keys.lengthHeaderBytes();
+        BigInteger ciphert = BigInteger.ZERO;
+        for (int j = 0; j < header; j++) {
+            ciphert = addByte(ciphert, (message.length >>> (8 * (header - 1 - j))) & 0xFF, j);
+        }
+        for (int i = 0; i < message.length; i++) {
+            ciphert = addByte(ciphert, message[i] & 0xFF, header + i);
+        }
+        return ciphert;
+    }
+
+    public byte[] decryptMessage(BigInteger ciphert) {
+        return decryptMessage(ciphert, new byte[keys.blockBytes()]);
+    }
+
+    /**
+     * Reverse encryptMessage, using scratch (at least one block long) for the
+     * recovered block.
+     * @exception IllegalArgumentException
+     *   Indicates that the recovered length header is out of range, so the
+     *   ciphertext was not produced by encryptMessage with these keys.
+     **/
+    public byte[] decryptMessage(BigInteger ciphert, byte[] scratch) {
+        int blockBytes = keys.blockBytes();
+        decrypt(ciphert, scratch, 0, blockBytes);
+
+        int header = keys.lengthHeaderBytes();
+        long length = 0;
+        for (int j = 0; j < header; j++) {
+            length = (length << 8) | (scratch[j] & 0xFF);
+        }
+        if (length > keys.maxMessageBytes()) {
+            throw new IllegalArgumentException("ciphertext has an invalid length header");
+        }
+        return java.util.Arrays.copyOfRange(scratch, header, header + (int) length);
+    }
+
+    // Add the public key elements selected by the bits of the byte at index j.
+    private BigInteger addByte(BigInteger sum, int value, int j) {
+        if (value == 0) {
+            return sum;
+        }
+        if (j < tableWindows) {
+            return sum.add(table.lookup(j, value));
+        }
+        int bit = j * 8;
+        for (int mask = 0x80; mask != 0; mask >>>= 1, bit++) {
+            if ((value & mask) != 0) {
+                sum = sum.add(b[bit]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Decrypt one ciphertext integer into len bytes of out starting at off.
+     * Bits beyond the first len bytes are recovered but discarded.
+     * @exception IllegalStateException
+     *   Indicates that the engine only holds a public key.
+     **/
+    public void decrypt(BigInteger ciphert, byte[] out, int off, int len) {
+        if (w == null) {
+            throw new IllegalStateException("decryption needs the private key");
+        }
+        if (len > keys.blockBytes()) {
+            throw new IllegalArgumentException("output of " + len
+                    + " bytes exceeds the block size of " + keys.blockBytes() + " bytes");
+        }
+        BigInteger cPrime = ciphert.multiply(keys.getMultiplierInverse()).mod(keys.getModulus());
+
+        // Greedy walk down the superincreasing sequence, largest element first
+        java.util.Arrays.fill(out, off, off + len, (byte) 0);
+        int bits = len * 8;
+        for (int i = w.length - 1; i >= 0 && cPrime.signum() > 0; i--) {
+            if (cPrime.compareTo(w[i]) >= 0) {
+                cPrime = cPrime.subtract(w[i]);
+                if (i < bits) {
+                    out[off + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary key file for the knapsack cipher. The file is memory-mapped when
+ * opened and key arrays are only decoded the first time they are asked for,
+ * so opening a key file costs a header read rather than a key generation.
+ *
+ * Layout (all integers big-endian):
+ * <pre>
+ *   int   magic "MHK1"
+ *   int   element count n
+ *   long  offset of the private section, or 0 for a public key file
+ *   n x   b[i]                       public section
+ *   M, N, N^-1 mod M, n x w[i]       private section
+ * </pre>
+ * Each number is an int byte length followed by its unsigned magnitude.
+ **/
+public final class KnapsackKeyFile {
+    private static final int MAGIC = 0x4D484B31; // "MHK1"
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer mapped;
+    private final int count;
+    private final long privateOffset;
+    private volatile BigInteger[] publicKey;
+    private volatile KnapsackKeys keys;
+
+    private KnapsackKeyFile(ByteBuffer mapped, int count, long privateOffset) {
+        this.mapped = mapped;
+        this.count = count;
+        this.privateOffset = privateOffset;
+    }
+
+    /**
+     * Write keys to a file, replacing it if it exists.
+     * @param includePrivate
+     *   true to write the private section; false writes a public key file
+     * @exception IllegalArgumentException
+     *   Indicates that includePrivate is true but the keys have no private half.
+     **/
+    public static void write(KnapsackKeys keys, Path path, boolean includePrivate) throws IOException {
+        if (includePrivate && !keys.hasPrivateKey()) {
+            throw new IllegalArgumentException("keys have no private half to write");
+        }
+        BigInteger[] b = keys.publicKey();
+        long publicBytes = 0;
+        for (BigInteger bi : b) {
+            publicBytes += 4 + magnitude(bi).length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(b.length);
+            out.writeLong(includePrivate ? HEADER_BYTES + publicBytes : 0);
+            for (BigInteger bi : b) {
+                writeNumber(out, bi);
+            }
+            if (includePrivate) {
+                writeNumber(out, keys.getModulus());
+                writeNumber(out, keys.getMultiplier());
+                writeNumber(out, keys.getMultiplierInverse());
+                for (BigInteger wi : keys.privateSequence()) {
+                    writeNumber(out, wi);
+                }
+            }
+        }
+    }
+
+    /**
+     * Map a key file and check its header and the lengths in its public
+     * section. Key arrays are decoded on first use.
+     * @exception IOException
+     *   Indicates that the file cannot be read or is not a key file.
+     **/
+    public static KnapsackKeyFile open(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a knapsack key file");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a knapsack key file");
+        }
+        int count = mapped.getInt(4);
+        long privateOffset = mapped.getLong(8);
+        if (count < 0 || privateOffset < 0 || privateOffset > mapped.capacity()) {
+            throw new IOException(path + " has a corrupt key file header");
+        }
+        // Walk the public section's lengths so the private section cannot overlap it.
+        ByteBuffer in = mapped.duplicate();
+        in.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            int length = numberLength(in);
+            in.position(in.position() + length);
+        }
+        if (privateOffset != 0 && privateOffset < in.position()) {
+            throw new IOException(path + " has a corrupt key file header");
+        }
+        return new KnapsackKeyFile(mapped, count, privateOffset);
+    }
+
+    public boolean hasPrivateKey() {
+        return privateOffset != 0;
+    }
+
+    // Number of elements in each key sequence.
+    public int length() {
+        return count;
+    }
+
+    /**
+     * Public key only; decodes the public section on first call.
+     * @exception IOException
+     *   Indicates that the public section is corrupt.
+     **/
+    public KnapsackKeys publicKeys() throws IOException {
+        KnapsackKeys loaded = keys;
+        return loaded != null ? loaded.publicOnly() : new KnapsackKeys(publicKey());
+    }
+
+    /**
+     * Full keys; decodes both sections on first call.
+     * @exception IllegalStateException
+     *   Indicates that this is a public key file.
+     * @exception IOException
+     *   Indicates that a section is corrupt.
+     **/
+    public KnapsackKeys keys() throws IOException {
+        KnapsackKeys loaded = keys;
+        if (loaded == null) {
+            if (!hasPrivateKey()) {
+                throw new IllegalStateException("key file has no private section");
+            }
+            ByteBuffer in = section(privateOffset);
+            BigInteger M = readNumber(in);
+            BigInteger N = readNumber(in);
+            BigInteger NInverse = readNumber(in);
+            BigInteger[] w = new BigInteger[count];
+            for (int i = 0; i < count; i++) {
+                w[i] = readNumber(in);
+            }
+            loaded = new KnapsackKeys(w, publicKey(), M, N, NInverse);
+            keys = loaded;
+        }
+        return loaded;
+    }
+
+    private BigInteger[] publicKey() throws IOException {
+        BigInteger[] loaded = publicKey;
+        if (loaded == null) {
+            ByteBuffer in = section(HEADER_BYTES);
+            loaded = new BigInteger[count];
+            for (int i = 0; i < count; i++) {
+                loaded[i] = readNumber(in);
+            }
+            publicKey = loaded;
+        }
+        return loaded;
+    }
+
+    // An independent view of the mapping positioned at offset, so concurrent loads do not interfere.
+    private ByteBuffer section(long offset) {
+        ByteBuffer in = mapped.duplicate();
+        in.position((int) offset);
+        return in;
+    }
+
+    private static BigInteger readNumber(ByteBuffer in) throws IOException {
+        byte[] magnitude = new byte[numberLength(in)];
+        in.get(magnitude);
+        return new BigInteger(1, magnitude);
+    }
+
+    // Read a number's byte length, checking that the magnitude fits in what is left of the file.
+    private static int numberLength(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4) {
+            throw new IOException("key file is truncated");
+        }
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("key file has a corrupt number length");
+        }
+        return length;
+    }
+
+    private static void writeNumber(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] magnitude = magnitude(value);
+        out.writeInt(magnitude.length);
+        out.write(magnitude);
+    }
+
+    // Big-endian magnitude without the sign byte BigInteger.toByteArray may prepend.
+    private static byte[] magnitude(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            return java.util.Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return bytes;
+    }
+}
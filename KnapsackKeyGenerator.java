@@ -0,0 +1,64 @@
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Generates Merkle-Hellman keys from a KeyGenParameters. The public key
+ * elements N * w[i] mod M are independent of each other and are derived in
+ * parallel; all random numbers come from the single source in the parameters.
+ **/
+public class KnapsackKeyGenerator {
+    private final KeyGenParameters params;
+    private long lastGenerationNanos;
+
+    public KnapsackKeyGenerator(KeyGenParameters params) {
+        this.params = params;
+    }
+
+    public KnapsackKeys generate() {
+        long start = System.nanoTime();
+        Random random = params.getRandom();
+
+        // Generate a superincreasing sequence (private key)
+        BigInteger[] w = new BigInteger[params.getKeyLength()];
+        BigInteger tot = BigInteger.ZERO;
+        BigInteger seven = BigInteger.valueOf(7);
+        for (int i = 0; i < w.length; i++) {
+            if (params.getGrowth() == KeyGenParameters.Growth.POWERS_OF_SEVEN) {
+                w[i] = i == 0 ? BigInteger.ONE : w[i - 1].multiply(seven);
+            } else {
+                w[i] = tot.add(BigInteger.ONE).add(new BigInteger(KeyGenParameters.RANDOM_SPREAD_BITS, random));
+            }
+            tot = tot.add(w[i]);
+        }
+
+        // Set the modulus greater than the sum of the superincreasing sequence
+        BigInteger M;
+        if (params.getGrowth() == KeyGenParameters.Growth.POWERS_OF_SEVEN) {
+            M = tot.add(BigInteger.valueOf(1000));
+        } else {
+            M = tot.add(BigInteger.ONE).add(new BigInteger(KeyGenParameters.RANDOM_SPREAD_BITS, random));
+        }
+
+        // Choose a multiplier 1 < N < M such that gcd(N, M) = 1
+        BigInteger N;
+        do {
+            N = new BigInteger(M.bitLength(), random);
+        } while (N.compareTo(BigInteger.ONE) <= 0 || N.compareTo(M) >= 0
+                || !M.gcd(N).equals(BigInteger.ONE));
+
+        // Generate the public key using the private key and multiplier
+        BigInteger[] b = new BigInteger[w.length];
+        BigInteger multiplier = N;
+        IntStream.range(0, w.length).parallel().forEach(i -> b[i] = multiplier.multiply(w[i]).mod(M));
+
+        KnapsackKeys keys = new KnapsackKeys(w, b, M, N);
+        lastGenerationNanos = System.nanoTime() - start;
+        return keys;
+    }
+
+    // Wall-clock time taken by the most recent generate call.
+    public long getLastGenerationNanos() {
+        return lastGenerationNanos;
+    }
+}
@@ -0,0 +1,152 @@
+import java.math.BigInteger;
+
+/**
+ * Array-backed Merkle-Hellman key material. The superincreasing sequence w
+ * (private key) and the derived sequence b (public key) are held in
+ * contiguous arrays so the encrypt and decrypt loops index them directly
+ * instead of walking an ObjectNode chain. Keys loaded from a public key
+ * file carry only b; they can encrypt but not decrypt.
+ **/
+public final class KnapsackKeys {
+    private final BigInteger[] w; // Superincreasing sequence (private key)
+    private final BigInteger[] b; // Public key
+    private final BigInteger M;   // Modulus
+    private final BigInteger N;   // Multiplier
+    private final BigInteger NInverse; // N^-1 mod M, computed once for decryption
+
+    /**
+     * Wrap existing key arrays. The arrays are used as-is, not copied.
+     * @param w
+     *   the superincreasing sequence
+     * @param b
+     *   the public key, element i being N * w[i] mod M
+     * @param M
+     *   the modulus
+     * @param N
+     *   the multiplier
+     * @exception IllegalArgumentException
+     *   Indicates that w and b do not have the same length.
+     * @exception ArithmeticException
+     *   Indicates that N has no inverse modulo M.
+     **/
+    public KnapsackKeys(BigInteger[] w, BigInteger[] b, BigInteger M, BigInteger N) {
+        if (w.length != b.length) {
+            throw new IllegalArgumentException("w and b must have the same length");
+        }
+        this.w = w;
+        this.b = b;
+        this.M = M;
+        this.N = N;
+        this.NInverse = N.modInverse(M);
+    }
+
+    /**
+     * Wrap key arrays together with an already computed inverse of N, as
+     * stored in a key file. The arrays are used as-is, not copied.
+     **/
+    public KnapsackKeys(BigInteger[] w, BigInteger[] b, BigInteger M, BigInteger N, BigInteger NInverse) {
+        if (w.length != b.length) {
+            throw new IllegalArgumentException("w and b must have the same length");
+        }
+        this.w = w;
+        this.b = b;
+        this.M = M;
+        this.N = N;
+        this.NInverse = NInverse;
+    }
+
+    /**
+     * Wrap a public key on its own. The private accessors return null.
+     **/
+    public KnapsackKeys(BigInteger[] b) {
+        this.w = null;
+        this.b = b;
+        this.M = null;
+        this.N = null;
+        this.NInverse = null;
+    }
+
+    /**
+     * Build array-backed keys from the linked-list representation used by
+     * MerkleHellmanKnapsack.
+     **/
+    public static KnapsackKeys fromLists(ObjectNode w, ObjectNode b, BigInteger M, BigInteger N) {
+        return new KnapsackKeys(toArray(w), toArray(b), M, N);
+    }
+
+    /**
+     * Copy a chain of BigInteger nodes into an array.
+     **/
+    public static BigInteger[] toArray(ObjectNode head) {
+        BigInteger[] answer = new BigInteger[ObjectNode.listLength(head)];
+        int i = 0;
+        for (ObjectNode cursor = head; cursor != null; cursor = cursor.getLink()) {
+            answer[i++] = (BigInteger) cursor.getData();
+        }
+        return answer;
+    }
+
+    /**
+     * Copy an array into a new chain of ObjectNodes, returning its head.
+     **/
+    public static ObjectNode toList(BigInteger[] values) {
+        ObjectNode head = null;
+        for (int i = values.length - 1; i >= 0; i--) {
+            head = new ObjectNode(values[i], head);
+        }
+        return head;
+    }
+
+    // Number of elements in each key sequence, i.e. the number of message bits per block.
+    public int length() {
+        return b.length;
+    }
+
+    // Number of whole message bytes one ciphertext integer can carry.
+    public int blockBytes() {
+        return b.length / 8;
+    }
+
+    // Bytes of the length header that starts a framed message: enough to count to maxMessageBytes.
+    public int lengthHeaderBytes() {
+        int blockBytes = blockBytes();
+        if (blockBytes <= 0x100) {
+            return 1;
+        }
+        return blockBytes - 2 <= 0xFFFF ? 2 : 4;
+    }
+
+    // Longest message a framed block can carry after its length header.
+    public int maxMessageBytes() {
+        return Math.max(0, blockBytes() - lengthHeaderBytes());
+    }
+
+    public boolean hasPrivateKey() {
+        return w != null;
+    }
+
+    // Keys without the private half, suitable for handing to encrypt-only callers.
+    public KnapsackKeys publicOnly() {
+        return hasPrivateKey() ? new KnapsackKeys(b) : this;
+    }
+
+    public BigInteger[] privateSequence() {
+        return w;
+    }
+
+    public BigInteger[] publicKey() {
+        return b;
+    }
+
+    public BigInteger getModulus() {
+        return M;
+    }
+
+    public BigInteger getMultiplier() {
+        return N;
+    }
+
+    public BigInteger getMultiplierInverse() {
+        return NInverse;
+    }
+}
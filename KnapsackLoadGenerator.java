@@ -0,0 +1,116 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Load generator for KnapsackServer. Each simulated client opens one
+ * connection and sends encrypt/decrypt round trips back to back; the run
+ * reports overall requests per second and the latency distribution.
+ **/
+public class KnapsackLoadGenerator {
+
+    // Runs one client and returns the latency of each request in nanoseconds.
+    private static long[] runClient(int port, int roundTrips, int payloadBytes, long seed) throws IOException {
+        long[] latencies = new long[roundTrips * 2];
+        byte[] payload = new byte[payloadBytes];
+        new Random(seed).nextBytes(payload);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            for (int i = 0; i < roundTrips; i++) {
+                long start = System.nanoTime();
+                byte[] ciphert = call(in, out, KnapsackServer.ENCRYPT, payload);
+                long mid = System.nanoTime();
+                byte[] plain = call(in, out, KnapsackServer.DECRYPT, ciphert);
+                long end = System.nanoTime();
+                if (!Arrays.equals(payload, plain)) {
+                    throw new IOException("round trip returned different plaintext");
+                }
+                latencies[2 * i] = mid - start;
+                latencies[2 * i + 1] = end - mid;
+            }
+        }
+        return latencies;
+    }
+
+    private static byte[] call(DataInputStream in, DataOutputStream out, byte op, byte[] body) throws IOException {
+        out.writeByte(op);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+
+        byte status = in.readByte();
+        byte[] response = new byte[in.readInt()];
+        in.readFully(response);
+        if (status != KnapsackServer.OK) {
+            throw new IOException("server error: " + new String(response, StandardCharsets.UTF_8));
+        }
+        return response;
+    }
+
+    private static double percentileMillis(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Usage: KnapsackLoadGenerator [port] [clients] [round trips per client] [payload bytes]
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7640;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int roundTrips = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int payloadBytes = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        // Every latency is kept in one array, so the request count must fit in an int.
+        if (clients <= 0 || roundTrips <= 0 || payloadBytes <= 0
+                || (long) clients * roundTrips * 2 > Integer.MAX_VALUE) {
+            System.out.println("Usage: KnapsackLoadGenerator [port] [clients] [round trips per client] [payload bytes]");
+            System.out.println("clients, round trips and payload bytes must be positive, and clients * round trips"
+                    + " at most " + Integer.MAX_VALUE / 2);
+            return;
+        }
+
+        ExecutorService pool = KnapsackServer.newConnectionExecutor();
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            results.add(pool.submit(() -> runClient(port, roundTrips, payloadBytes, seed)));
+        }
+
+        long[] all = new long[clients * roundTrips * 2];
+        int n = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] latencies = result.get();
+                System.arraycopy(latencies, 0, all, n, latencies.length);
+                n += latencies.length;
+            }
+        } catch (ExecutionException e) {
+            System.out.println("Client failed: " + e.getCause());
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(all);
+        System.out.printf("%d requests from %d clients in %.2f s: %.0f requests/sec%n",
+                all.length, clients, seconds, all.length / seconds);
+        System.out.printf("latency ms: p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                percentileMillis(all, 50), percentileMillis(all, 99),
+                percentileMillis(all, 99.9), all[all.length - 1] / 1e6);
+    }
+}
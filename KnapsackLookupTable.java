@@ -0,0 +1,73 @@
+import java.math.BigInteger;
+
+/**
+ * Precomputed subset sums of the public key, one 256-entry table per 8-element
+ * window of b. Entry v of window j is the sum of b[8j + k] over the bits k set
+ * in the byte value v (most significant bit first), so encrypting a message
+ * byte costs one lookup and one BigInteger.add instead of up to eight adds.
+ *
+ * Tables are built for the leading windows only, as many as fit in the memory
+ * budget given to build; bytes past the last table fall back to bitwise adds.
+ **/
+public final class KnapsackLookupTable {
+    // Rough per-entry overhead of a BigInteger and its magnitude array, in bytes.
+    private static final int ENTRY_OVERHEAD = 56;
+
+    private final BigInteger[][] windows;
+
+    private KnapsackLookupTable(BigInteger[][] windows) {
+        this.windows = windows;
+    }
+
+    /**
+     * Build tables for as many leading windows of the public key as fit in
+     * maxBytes of estimated heap.
+     * @param keys
+     *   the keys whose public key is tabulated
+     * @param maxBytes
+     *   memory budget for the tables; 0 builds no tables
+     * @exception IllegalArgumentException
+     *   Indicates that maxBytes is negative.
+     **/
+    public static KnapsackLookupTable build(KnapsackKeys keys, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes is negative");
+        }
+        BigInteger[] b = keys.publicKey();
+        long windowCount = Math.min(keys.blockBytes(), maxBytes / bytesPerWindow(keys));
+
+        BigInteger[][] windows = new BigInteger[(int) windowCount][];
+        for (int j = 0; j < windows.length; j++) {
+            BigInteger[] table = new BigInteger[256];
+            table[0] = BigInteger.ZERO;
+            // Each value extends the value without its lowest set bit by one element.
+            for (int v = 1; v < 256; v++) {
+                int low = Integer.numberOfTrailingZeros(v);
+                table[v] = table[v & (v - 1)].add(b[j * 8 + 7 - low]);
+            }
+            windows[j] = table;
+        }
+        return new KnapsackLookupTable(windows);
+    }
+
+    // Estimated heap cost of one 256-entry window for these keys.
+    public static long bytesPerWindow(KnapsackKeys keys) {
+        int bits = 0;
+        for (BigInteger bi : keys.publicKey()) {
+            bits = Math.max(bits, bi.bitLength());
+        }
+        // Subset sums of a window grow by at most three bits over its largest element.
+        long magnitude = (bits + 3 + 7) / 8;
+        return 256 * (magnitude + ENTRY_OVERHEAD);
+    }
+
+    // Number of leading message bytes covered by a table.
+    public int windowCount() {
+        return windows.length;
+    }
+
+    // Sum of public key elements selected by the bits of value in window j.
+    public BigInteger lookup(int j, int value) {
+        return windows[j][value];
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback TCP service that encrypts and decrypts with one loaded key.
+ *
+ * Each connection carries any number of requests, answered in order:
+ * <pre>
+ *   request:  byte op (ENCRYPT or DECRYPT), int length, length bytes
+ *   response: byte status (OK or ERROR), int length, length bytes
+ * </pre>
+ * ENCRYPT takes a message of up to maxMessageBytes and answers with the
+ * ciphertext integer's big-endian two's-complement bytes. DECRYPT takes
+ * those bytes and answers with exactly the original message. ERROR
+ * responses carry a UTF-8 message.
+ *
+ * Connections are served on virtual threads when the JVM provides them
+ * (Java 21 and later), and on a cached thread pool otherwise.
+ **/
+public class KnapsackServer implements AutoCloseable {
+    public static final byte ENCRYPT = 1;
+    public static final byte DECRYPT = 2;
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+
+    // Requests longer than this are rejected before their body is read.
+    public static final int MAX_REQUEST_BYTES = 1 << 20;
+
+    private final KnapsackEngine engine;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+
+    /**
+     * Bind to a loopback port; 0 picks a free one.
+     **/
+    public KnapsackServer(KnapsackEngine engine, int port) throws IOException {
+        this.engine = engine;
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Accept connections until the server is closed, handing each to its own thread.
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            byte[] scratch = new byte[engine.getKeys().blockBytes()];
+            while (true) {
+                int op;
+                try {
+                    op = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return; // Client closed the connection between requests.
+                }
+                int length = in.readInt();
+                if (length < 0 || length > MAX_REQUEST_BYTES) {
+                    respond(out, ERROR, ("request length " + length + " is out of range")
+                            .getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                try {
+                    if (op == ENCRYPT) {
+                        respond(out, OK, engine.encryptMessage(body).toByteArray());
+                    } else if (op == DECRYPT) {
+                        respond(out, OK, engine.decryptMessage(new BigInteger(body), scratch));
+                    } else {
+                        respond(out, ERROR, ("unknown op " + op).getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (RuntimeException e) {
+                    respond(out, ERROR, String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            // The connection is gone; other connections are unaffected.
+        }
+    }
+
+    private static void respond(DataOutputStream out, byte status, byte[] body) throws IOException {
+        out.writeByte(status);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    // One virtual thread per task where available, looked up reflectively so this compiles on older JDKs.
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Usage: KnapsackServer [port] [key file]
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7640;
+
+        MerkleHellmanKnapsack mh = new MerkleHellmanKnapsack();
+        mh.setLookupTableBudget(16 << 20);
+        if (args.length > 1 && Files.exists(Paths.get(args[1]))) {
+            mh.loadKeys(Paths.get(args[1]));
+        } else {
+            mh.genKeys();
+        }
+
+        try (KnapsackServer server = new KnapsackServer(mh.getEngine(), port)) {
+            System.out.println("Knapsack server listening on 127.0.0.1:" + server.getPort());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming mode for the knapsack cipher, for inputs larger than memory.
+ *
+ * Encryption reads the input in key-sized blocks and writes one record per
+ * block: an int plaintext length, an int ciphertext length, and the
+ * ciphertext integer's big-endian two's-complement bytes. Decryption reads
+ * those records back. In both directions a reader thread parses the input
+ * and submits each block to the executor while the calling thread writes
+ * finished blocks in order, so reading, the cipher and writing overlap. At
+ * most maxInFlight blocks are buffered between them. If writing fails, the
+ * reader stops after its current block and every block still in flight is
+ * cancelled before the call returns.
+ **/
+public class KnapsackStreamCipher {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    // Marks the end of the input in the queue between the reader and the writer.
+    private static final Future<byte[]> END = CompletableFuture.completedFuture(null);
+
+    private final KnapsackEngine engine;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public KnapsackStreamCipher(KnapsackEngine engine) {
+        this(engine, ForkJoinPool.commonPool(), DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public KnapsackStreamCipher(KnapsackEngine engine, ExecutorService executor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight is not positive");
+        }
+        this.engine = engine;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Encrypt everything remaining in in, writing ciphertext records to out.
+     * Neither stream is closed; out is flushed.
+     **/
+    public void encrypt(InputStream in, OutputStream out) throws IOException {
+        int blockBytes = engine.getKeys().blockBytes();
+        pipeline(new BufferedInputStream(in), out, input -> {
+            byte[] block = input.readNBytes(blockBytes);
+            if (block.length == 0) {
+                return null;
+            }
+            return () -> {
+                byte[] ciphert = engine.encrypt(block).toByteArray();
+                ByteArrayOutputStream record = new ByteArrayOutputStream(8 + ciphert.length);
+                DataOutputStream data = new DataOutputStream(record);
+                data.writeInt(block.length);
+                data.writeInt(ciphert.length);
+                data.write(ciphert);
+                return record.toByteArray();
+            };
+        });
+    }
+
+    /**
+     * Decrypt ciphertext records remaining in in, writing the plaintext to out.
+     * Neither stream is closed; out is flushed.
+     * @exception IOException
+     *   Indicates a read or write failure, or a malformed or truncated record.
+     **/
+    public void decrypt(InputStream in, OutputStream out) throws IOException {
+        int blockBytes = engine.getKeys().blockBytes();
+        int maxCipherBytes = maxCiphertextBytes(engine.getKeys());
+        pipeline(new BufferedInputStream(in), out, input -> {
+            // End of input is only clean between records.
+            int first = input.read();
+            if (first < 0) {
+                return null;
+            }
+            int length;
+            int cipherLength;
+            byte[] ciphert;
+            try {
+                length = (first << 24) | (input.readUnsignedByte() << 16) | input.readUnsignedShort();
+                cipherLength = input.readInt();
+                if (length < 0 || length > blockBytes || cipherLength <= 0 || cipherLength > maxCipherBytes) {
+                    throw new IOException("malformed ciphertext record");
+                }
+                ciphert = new byte[cipherLength];
+                input.readFully(ciphert);
+            } catch (EOFException e) {
+                throw new IOException("truncated ciphertext record", e);
+            }
+            return () -> {
+                byte[] block = new byte[length];
+                engine.decrypt(new BigInteger(ciphert), block, 0, length);
+                return block;
+            };
+        });
+    }
+
+    // Longest encoding of a sum of public key elements: each is below the largest, and there are length() of them.
+    private static int maxCiphertextBytes(KnapsackKeys keys) {
+        int bits = 0;
+        for (BigInteger b : keys.publicKey()) {
+            bits = Math.max(bits, b.bitLength());
+        }
+        bits += 32 - Integer.numberOfLeadingZeros(keys.length());
+        return bits / 8 + 1; // toByteArray adds a sign bit
+    }
+
+    // Parses the next unit of work from the input, or returns null at its end.
+    private interface BlockReader {
+        Callable<byte[]> next(DataInputStream input) throws IOException;
+    }
+
+    private void pipeline(InputStream in, OutputStream out, BlockReader reader) throws IOException {
+        BlockingQueue<Future<byte[]>> inFlight = new ArrayBlockingQueue<>(maxInFlight);
+        DataInputStream input = new DataInputStream(in);
+        // Set when the writer is done, so the reader stops touching the caller's stream.
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        // Producer: parse blocks and hand them to the executor, in input order.
+        Thread producer = new Thread(() -> {
+            try {
+                try {
+                    Callable<byte[]> work;
+                    while (!stopped.get() && (work = reader.next(input)) != null) {
+                        if (stopped.get()) {
+                            break;
+                        }
+                        inFlight.put(executor.submit(work));
+                    }
+                    inFlight.put(END);
+                } catch (IOException | RuntimeException e) {
+                    inFlight.put(CompletableFuture.failedFuture(e));
+                }
+            } catch (InterruptedException e) {
+                // The writer gave up; nobody is waiting for more blocks.
+            }
+            if (stopped.get()) {
+                cancelAll(inFlight); // Anything queued after the writer drained the queue
+            }
+        }, "knapsack-stream-reader");
+        producer.setDaemon(true);
+        producer.start();
+
+        // Consumer: write finished blocks in the order they were read.
+        OutputStream output = new BufferedOutputStream(out);
+        try {
+            Future<byte[]> next;
+            while ((next = inFlight.take()) != END) {
+                output.write(next.get());
+            }
+            output.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("stream cipher interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            stopped.set(true);
+            producer.interrupt();
+            cancelAll(inFlight);
+        }
+    }
+
+    private static void cancelAll(BlockingQueue<Future<byte[]>> inFlight) {
+        Future<byte[]> pending;
+        while ((pending = inFlight.poll()) != null) {
+            pending.cancel(true);
+        }
+    }
+}
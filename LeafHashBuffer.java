@@ -0,0 +1,32 @@
+/**
+ * Growable packed array of leaf hashes, hashBytes apiece, filled in order
+ * by a MappedLeafScanner.
+ **/
+public class LeafHashBuffer implements MappedLeafScanner.LeafSink {
+    private final int hashBytes;
+    private byte[] hashes;
+    private int count;
+
+    public LeafHashBuffer(int hashBytes) {
+        this.hashBytes = hashBytes;
+        this.hashes = new byte[64 * hashBytes];
+    }
+
+    @Override
+    public void leaf(byte[] hash, int off) {
+        if ((count + 1) * hashBytes > hashes.length) {
+            hashes = java.util.Arrays.copyOf(hashes, 2 * hashes.length);
+        }
+        System.arraycopy(hash, off, hashes, count * hashBytes, hashBytes);
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // Backing array; only the first count() hashes are meaningful.
+    public byte[] hashes() {
+        return hashes;
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a file into line leaves by memory-mapping it and scanning the mapped
+ * bytes for CR, LF and CRLF record delimiters. Each line is trimmed and its
+ * bytes are fed straight from the mapping into the digest, without decoding
+ * to a String.
+ *
+ * The leaves are the ones BufferedReader.readLine() followed by String.trim()
+ * produce: trim drops chars up to U+0020, which in UTF-8 are exactly the
+ * bytes 0x00-0x20. Only files that are not valid in the reader's charset
+ * hash differently, since the byte path never substitutes replacement chars.
+ *
+ * Large files are mapped one region at a time. A line that runs past the end
+ * of a region is rescanned from its start in the next region, so lines must
+ * be shorter than the region size.
+ **/
+public class MappedLeafScanner {
+    public static final long DEFAULT_REGION_BYTES = 64L << 20;
+
+    // Receives each leaf hash, in file order, as digestLength() bytes of hash at off.
+    public interface LeafSink {
+        void leaf(byte[] hash, int off);
+    }
+
+    private final MerkleHasher hashing;
+    private final long regionBytes;
+    private final byte[] leafHash;
+
+    public MappedLeafScanner(MerkleHasher hashing) {
+        this(hashing, DEFAULT_REGION_BYTES);
+    }
+
+    public MappedLeafScanner(MerkleHasher hashing, long regionBytes) {
+        if (regionBytes <= 0 || regionBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("regionBytes must be between 1 and Integer.MAX_VALUE");
+        }
+        this.hashing = hashing;
+        this.regionBytes = regionBytes;
+        this.leafHash = new byte[hashing.digestLength()];
+    }
+
+    // Hash every line of the file, in order.
+    public void scan(Path path, LeafSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(channel, 0, channel.size(), sink);
+        }
+    }
+
+    /**
+     * Hash the lines in bytes [start, end) of the channel. start must be the
+     * first byte of a line; a line still open at end is hashed as ending there.
+     * @exception IOException
+     *   Indicates a read failure, or a line longer than the region size.
+     **/
+    public void scan(FileChannel channel, long start, long end, LeafSink sink) throws IOException {
+        long pos = start;
+        boolean skipLf = false; // The previous region ended on a CR that may be half of a CRLF
+        while (pos < end) {
+            int length = (int) Math.min(regionBytes, end - pos);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+
+            int i = 0;
+            if (skipLf && region.get(0) == '\n') {
+                i = 1;
+            }
+            skipLf = false;
+            int lineStart = i;
+            while (i < length) {
+                byte b = region.get(i);
+                if (b == '\n' || b == '\r') {
+                    emit(region, lineStart, i, sink);
+                    if (b == '\r') {
+                        if (i + 1 < length) {
+                            if (region.get(i + 1) == '\n') {
+                                i++;
+                            }
+                        } else {
+                            skipLf = true;
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+                i++;
+            }
+
+            if (pos + length == end) {
+                // A last line without a delimiter is still a line.
+                if (lineStart < length) {
+                    emit(region, lineStart, length, sink);
+                }
+                pos = end;
+            } else {
+                if (lineStart == 0) {
+                    throw new IOException("line at offset " + pos + " is longer than "
+                            + regionBytes + " bytes");
+                }
+                pos += lineStart; // Rescan the unfinished line from its start.
+            }
+        }
+    }
+
+    /**
+     * The first byte at or after pos that starts a line, for cutting a file
+     * into ranges that scan can process independently. Returns the channel
+     * size if no line starts at or after pos.
+     **/
+    public static long lineStartAtOrAfter(FileChannel channel, long pos) throws IOException {
+        if (pos <= 0) {
+            return 0;
+        }
+        long size = channel.size();
+        // Start one byte early so a delimiter ending just before pos is seen.
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(64 * 1024);
+        long at = pos - 1;
+        boolean afterCr = false;
+        while (at < size) {
+            buffer.clear();
+            int read = channel.read(buffer, at);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (afterCr) {
+                    return b == '\n' ? at + i + 1 : at + i;
+                }
+                if (b == '\n') {
+                    return at + i + 1;
+                }
+                if (b == '\r') {
+                    afterCr = true;
+                }
+            }
+            at += read;
+        }
+        return size;
+    }
+
+    /**
+     * The first byte of the last line in bytes [0, end) of the channel: the
+     * line that a delimiter at end - 1, if any, closes. Returns 0 if there is
+     * only one line.
+     **/
+    public static long lastLineStart(FileChannel channel, long end) throws IOException {
+        java.nio.ByteBuffer one = java.nio.ByteBuffer.allocate(1);
+        long at = end;
+        // Step back over the last line's own delimiter: LF, CR or CRLF.
+        if (at > 0) {
+            byte last = byteAt(channel, at - 1, one);
+            if (last == '\n') {
+                at--;
+                if (at > 0 && byteAt(channel, at - 1, one) == '\r') {
+                    at--;
+                }
+            } else if (last == '\r') {
+                at--;
+            }
+        }
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(64 * 1024);
+        while (at > 0) {
+            int length = (int) Math.min(buffer.capacity(), at);
+            buffer.clear().limit(length);
+            long from = at - length;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    throw new IOException("file is shorter than " + end + " bytes");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return from + i + 1;
+                }
+            }
+            at = from;
+        }
+        return 0;
+    }
+
+    private static byte byteAt(FileChannel channel, long pos, java.nio.ByteBuffer one) throws IOException {
+        one.clear();
+        if (channel.read(one, pos) < 1) {
+            throw new IOException("cannot read byte " + pos);
+        }
+        return one.get(0);
+    }
+
+    // Trim the line [from, to) of region and hash what is left.
+    private void emit(MappedByteBuffer region, int from, int to, LeafSink sink) {
+        while (from < to && (region.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (region.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        hashing.hashLeaf(region.slice(from, to - from), leafHash, 0);
+        sink.leaf(leafHash, 0);
+    }
+}
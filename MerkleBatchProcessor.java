@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the Merkle roots of many files at once on a work-stealing
+ * ForkJoinPool. Files at least chunkBytes long are cut at line boundaries
+ * into chunk tasks whose leaf hashes are joined in order before the levels
+ * are combined in parallel. Smaller files are grouped into batches of about
+ * batchBytes, one task per batch, so thousands of tiny files do not each pay
+ * for a task. Roots are the same as MerkleTreeFileProcessor's.
+ **/
+public class MerkleBatchProcessor {
+    public static final long DEFAULT_CHUNK_BYTES = 8L << 20;
+    public static final long DEFAULT_BATCH_BYTES = 8L << 20;
+
+    // The outcome for one file.
+    public static final class Result {
+        private final Path path;
+        private final String algorithm;
+        private final byte[] root;
+        private final long leafCount;
+        private final long bytes;
+
+        Result(Path path, String algorithm, byte[] root, long leafCount, long bytes) {
+            this.path = path;
+            this.algorithm = algorithm;
+            this.root = root;
+            this.leafCount = leafCount;
+            this.bytes = bytes;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        // The MerkleHasher name the root was computed with.
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        // The root in hex, or null for a file with no lines.
+        public String getRootHex() {
+            return root == null ? null : MerkleHashing.toHex(root);
+        }
+
+        public long getLeafCount() {
+            return leafCount;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    private final MerkleHasher hashing;
+    private final ForkJoinPool pool;
+    private final long chunkBytes;
+    private final long batchBytes;
+
+    public MerkleBatchProcessor(MerkleHasher hashing) {
+        this(hashing, ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES, DEFAULT_BATCH_BYTES);
+    }
+
+    public MerkleBatchProcessor(MerkleHasher hashing, ForkJoinPool pool, long chunkBytes, long batchBytes) {
+        if (chunkBytes <= 0 || batchBytes <= 0) {
+            throw new IllegalArgumentException("chunkBytes and batchBytes must be positive");
+        }
+        this.hashing = hashing;
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+        this.batchBytes = batchBytes;
+    }
+
+    /**
+     * The regular files under a directory, or the files matching a glob such
+     * as "data/*.csv" or "data/**.csv". Index files and hidden files are
+     * skipped, and hidden directories such as .git are not searched.
+     **/
+    public static List<Path> findFiles(String directoryOrGlob) throws IOException {
+        Path base = Paths.get(directoryOrGlob);
+        PathMatcher matcher = null;
+        if (!Files.isDirectory(base)) {
+            // Walk from the directory named before the first glob character.
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + directoryOrGlob);
+            int firstGlob = 0;
+            while (firstGlob < directoryOrGlob.length() && "*?[{".indexOf(directoryOrGlob.charAt(firstGlob)) < 0) {
+                firstGlob++;
+            }
+            int slash = directoryOrGlob.lastIndexOf('/', firstGlob);
+            base = Paths.get(slash < 0 ? "" : directoryOrGlob.substring(0, Math.max(slash, 1)));
+        }
+        PathMatcher match = matcher;
+        Path root = base.toString().isEmpty() ? Paths.get(".") : base;
+        List<Path> found = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && isHidden(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!isHidden(file) && Files.isRegularFile(file)) {
+                    found.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return found.stream()
+                .map(p -> p.startsWith(".") && !directoryOrGlob.startsWith(".") ? Paths.get(".").relativize(p) : p)
+                .filter(p -> !p.toString().endsWith(".merkle"))
+                .filter(p -> match == null || match.matches(p))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    /**
+     * Compute the root of every file, returning the results in the order given.
+     **/
+    public List<Result> process(List<Path> files) throws IOException {
+        Result[] results = new Result[files.size()];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (int i = 0; i < files.size(); i++) {
+            long size = Files.size(files.get(i));
+            if (size >= chunkBytes) {
+                tasks.add(new LargeFileTask(files.get(i), size, i, results));
+                continue;
+            }
+            batch.add(i);
+            batchSize += size;
+            if (batchSize >= batchBytes) {
+                tasks.add(new SmallFilesTask(files, new ArrayList<>(batch), results));
+                batch.clear();
+                batchSize = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(new SmallFilesTask(files, batch, results));
+        }
+
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return java.util.Arrays.asList(results);
+    }
+
+    // Hashes a group of small files one after another on one worker.
+    private class SmallFilesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final List<Integer> indexes;
+        private final Result[] results;
+
+        SmallFilesTask(List<Path> files, List<Integer> indexes, Result[] results) {
+            this.files = files;
+            this.indexes = indexes;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            MappedLeafScanner scanner = new MappedLeafScanner(hashing);
+            for (int i : indexes) {
+                Path path = files.get(i);
+                StreamingMerkleBuilder builder = new StreamingMerkleBuilder(hashing);
+                try {
+                    scanner.scan(path, builder::addLeafHash);
+                    results[i] = new Result(path, hashing.name(), builder.root(), builder.getLeafCount(), Files.size(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    // Hashes one large file as line-aligned chunks in parallel, then combines the levels in parallel.
+    private class LargeFileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+        private final long size;
+        private final int index;
+        private final Result[] results;
+
+        LargeFileTask(Path path, long size, int index, Result[] results) {
+            this.path = path;
+            this.size = size;
+            this.index = index;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                List<ChunkTask> chunks = new ArrayList<>();
+                long start = 0;
+                while (start < size) {
+                    long end = MappedLeafScanner.lineStartAtOrAfter(channel, Math.min(size, start + chunkBytes));
+                    chunks.add(new ChunkTask(channel, start, end));
+                    start = end;
+                }
+                invokeAll(chunks);
+
+                // Join the chunks' leaves in file order.
+                int count = 0;
+                for (ChunkTask chunk : chunks) {
+                    count += chunk.join().count();
+                }
+                int hashBytes = hashing.digestLength();
+                byte[] leaves = new byte[count * hashBytes];
+                int off = 0;
+                for (ChunkTask chunk : chunks) {
+                    LeafHashBuffer part = chunk.join();
+                    System.arraycopy(part.hashes(), 0, leaves, off, part.count() * hashBytes);
+                    off += part.count() * hashBytes;
+                }
+                byte[] root = new ParallelMerkleBuilder(hashing, pool, ParallelMerkleBuilder.DEFAULT_THRESHOLD)
+                        .rootOfHashes(leaves, count);
+                results[index] = new Result(path, hashing.name(), root, count, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Hashes the lines in one byte range of a file.
+    private class ChunkTask extends RecursiveTask<LeafHashBuffer> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected LeafHashBuffer compute() {
+            LeafHashBuffer leaves = new LeafHashBuffer(hashing.digestLength());
+            try {
+                new MappedLeafScanner(hashing).scan(channel, start, end, leaves);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return leaves;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Usage: MerkleBatchProcessor <directory or glob> [hash name, e.g. SHA3-256 or Murmur3-128]
+        // A bare digest name hashes parents raw; SHA-256+hex, the default, gives the original roots.
+        String spec = args.length > 0 ? args[0] : "src";
+        MerkleHasher hashing = args.length > 1 ? MerkleHasher.forName(args[1]) : MerkleHashing.HEX_CONCAT;
+        List<Path> files = findFiles(spec);
+
+        long start = System.nanoTime();
+        List<Result> results = new MerkleBatchProcessor(hashing).process(files);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long bytes = 0;
+        for (Result result : results) {
+            String merkleHash = result.getRootHex();
+            System.out.println("File: " + result.getPath() + " -> Merkle Root: " + merkleHash);
+            if (merkleHash != null && merkleHash.equalsIgnoreCase(MerkleTreeFileProcessor.TARGET_HASH)) {
+                System.out.println("Match found! The file with the target Merkle root is: " + result.getPath());
+            }
+            bytes += result.getBytes();
+        }
+        System.out.printf("%d files, %.1f MB in %.2f s (%.1f MB/s, %s)%n",
+                results.size(), bytes / 1e6, seconds, bytes / 1e6 / seconds,
+                MerkleTreeFileProcessor.hashLabel(hashing));
+    }
+}
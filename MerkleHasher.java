@@ -0,0 +1,92 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A hash function for Merkle trees: how a leaf's bytes become a leaf hash and
+ * how two child hashes become their parent. Hashes are raw digestLength()
+ * byte values, packed back to back in a byte[] for a whole level.
+ *
+ * Implementations are MerkleHashing, backed by a JDK MessageDigest such as
+ * SHA-256, SHA-512/256 or SHA3-256, and Murmur3Hasher, a fast 128-bit hash
+ * with no resistance to deliberate collisions, for integrity checks against
+ * accidental damage only. name() identifies the function so it can be
+ * recorded next to a root and looked up again with forName.
+ **/
+public interface MerkleHasher {
+    // Name recorded with roots and indexes, accepted by forName.
+    String name();
+
+    // Length in bytes of every leaf and parent hash.
+    int digestLength();
+
+    // Hash len bytes of data at off as a leaf, writing the hash to out at outOff.
+    void hashLeaf(byte[] data, int off, int len, byte[] out, int outOff);
+
+    // Hash the remaining bytes of data as a leaf; data's position is advanced to its limit.
+    void hashLeaf(ByteBuffer data, byte[] out, int outOff);
+
+    /**
+     * Hash two children into their parent. The children and the output may
+     * live in the same array; the output may overlap either child.
+     **/
+    void combine(byte[] left, int leftOff, byte[] right, int rightOff, byte[] out, int outOff);
+
+    // Hash the UTF-8 bytes of text as a leaf.
+    default byte[] hashLeaf(String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[digestLength()];
+        hashLeaf(data, 0, data.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Compute the level above count packed hashes. An odd last hash is paired
+     * with itself.
+     **/
+    default byte[] nextLevel(byte[] level, int count) {
+        int size = digestLength();
+        int parents = (count + 1) / 2;
+        byte[] next = new byte[parents * size];
+        for (int p = 0; p < parents; p++) {
+            int left = 2 * p * size;
+            int right = 2 * p + 1 < count ? left + size : left;
+            combine(level, left, level, right, next, p * size);
+        }
+        return next;
+    }
+
+    /**
+     * Compute the root over count packed leaf hashes.
+     * @return
+     *   the root, or null if count is 0
+     **/
+    default byte[] root(byte[] leaves, int count) {
+        if (count == 0) {
+            return null;
+        }
+        byte[] level = leaves;
+        while (count > 1) {
+            level = nextLevel(level, count);
+            count = (count + 1) / 2;
+        }
+        return java.util.Arrays.copyOf(level, digestLength());
+    }
+
+    /**
+     * The hasher with the given name(): Murmur3Hasher.NAME, a MessageDigest
+     * algorithm such as "SHA3-256" for RAW parents, or the algorithm followed
+     * by MerkleHashing.HEX_SUFFIX for HEX_CONCAT parents.
+     * @exception IllegalArgumentException
+     *   Indicates that no such hash is available.
+     **/
+    static MerkleHasher forName(String name) {
+        if (name.equals(Murmur3Hasher.NAME)) {
+            return Murmur3Hasher.INSTANCE;
+        }
+        if (name.endsWith(MerkleHashing.HEX_SUFFIX)) {
+            return MerkleHashing.of(name.substring(0, name.length() - MerkleHashing.HEX_SUFFIX.length()),
+                    MerkleHashing.Mode.HEX_CONCAT);
+        }
+        return MerkleHashing.of(name, MerkleHashing.Mode.RAW);
+    }
+}
@@ -0,0 +1,149 @@
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MessageDigest-backed hashing for Merkle trees, SHA-256 unless another
+ * algorithm such as SHA-512/256 or SHA3-256 is asked for. Digests stay raw,
+ * packed back to back in a byte[] for a whole tree level, and are only turned
+ * into hex for output. Each thread reuses its own MessageDigest.
+ *
+ * Parents can be hashed in two ways. HEX_CONCAT reproduces the original
+ * MerkleTreeFileProcessor, which hashed the UTF-8 bytes of the two children's
+ * upper-case hex strings joined together, so roots computed earlier still
+ * match. RAW hashes the bytes of the two children directly.
+ **/
+public final class MerkleHashing implements MerkleHasher {
+    // Appended to the algorithm in name() for HEX_CONCAT parents.
+    public static final String HEX_SUFFIX = "+hex";
+
+    // How a parent is derived from its two children.
+    public enum Mode {
+        HEX_CONCAT,
+        RAW
+    }
+
+    public static final MerkleHashing HEX_CONCAT = new MerkleHashing("SHA-256", Mode.HEX_CONCAT);
+    public static final MerkleHashing RAW = new MerkleHashing("SHA-256", Mode.RAW);
+
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final String algorithm;
+    private final Mode mode;
+    private final int digestLength;
+    private final ThreadLocal<MessageDigest> digests;
+    // Per-thread buffer holding the hex text of two children in HEX_CONCAT mode.
+    private final ThreadLocal<byte[]> hexPair;
+
+    private MerkleHashing(String algorithm, Mode mode) {
+        this.algorithm = algorithm;
+        this.mode = mode;
+        this.digestLength = newDigest(algorithm).getDigestLength();
+        this.digests = ThreadLocal.withInitial(() -> newDigest(algorithm));
+        this.hexPair = ThreadLocal.withInitial(() -> new byte[4 * digestLength]);
+    }
+
+    /**
+     * Hashing with a MessageDigest algorithm, e.g. "SHA-256", "SHA-512/256"
+     * or "SHA3-256".
+     * @exception IllegalArgumentException
+     *   Indicates that the algorithm is not available.
+     **/
+    public static MerkleHashing of(String algorithm, Mode mode) {
+        if (algorithm.equals("SHA-256")) {
+            return mode == Mode.RAW ? RAW : HEX_CONCAT;
+        }
+        return new MerkleHashing(algorithm, mode);
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(algorithm + " is not available", e);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String name() {
+        return mode == Mode.HEX_CONCAT ? algorithm + HEX_SUFFIX : algorithm;
+    }
+
+    @Override
+    public int digestLength() {
+        return digestLength;
+    }
+
+    // This thread's digest for this algorithm, reset and ready for use.
+    private MessageDigest digest() {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        return digest;
+    }
+
+    @Override
+    public void hashLeaf(byte[] data, int off, int len, byte[] out, int outOff) {
+        MessageDigest digest = digest();
+        digest.update(data, off, len);
+        finish(digest, out, outOff);
+    }
+
+    @Override
+    public void hashLeaf(java.nio.ByteBuffer data, byte[] out, int outOff) {
+        MessageDigest digest = digest();
+        digest.update(data);
+        finish(digest, out, outOff);
+    }
+
+    @Override
+    public void combine(byte[] left, int leftOff, byte[] right, int rightOff, byte[] out, int outOff) {
+        MessageDigest digest = digest();
+        if (mode == Mode.HEX_CONCAT) {
+            byte[] hex = hexPair.get();
+            toHex(left, leftOff, digestLength, hex, 0);
+            toHex(right, rightOff, digestLength, hex, 2 * digestLength);
+            digest.update(hex, 0, hex.length);
+        } else {
+            digest.update(left, leftOff, digestLength);
+            digest.update(right, rightOff, digestLength);
+        }
+        finish(digest, out, outOff);
+    }
+
+    // Upper-case hex of a whole hash.
+    public static String toHex(byte[] hash) {
+        return toHex(hash, 0, hash.length);
+    }
+
+    // Upper-case hex of the len bytes of hash at off.
+    public static String toHex(byte[] hash, int off, int len) {
+        byte[] hex = new byte[2 * len];
+        toHex(hash, off, len, hex, 0);
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    private static void toHex(byte[] hash, int off, int len, byte[] out, int outOff) {
+        for (int i = 0; i < len; i++) {
+            int v = hash[off + i] & 0xFF;
+            out[outOff + 2 * i] = HEX_DIGITS[v >>> 4];
+            out[outOff + 2 * i + 1] = HEX_DIGITS[v & 0x0F];
+        }
+    }
+
+    private void finish(MessageDigest digest, byte[] out, int outOff) {
+        try {
+            digest.digest(out, outOff, digestLength);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("no room for a digest at offset " + outOff, e);
+        }
+    }
+}
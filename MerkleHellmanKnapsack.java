@@ -1,136 +1,228 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class MerkleHellmanKnapsack {
-    private ObjectNode w; // Superincreasing sequence (private key)
-    private ObjectNode b; // Public key
-    private BigInteger M; // Modulus
-    private BigInteger N; // Multiplier
+    // Replaced together under the object's lock; volatile so the cipher methods can read them without it.
+    private volatile KnapsackKeys keys; // Array-backed copy of the keys used on the hot paths
+    private volatile KnapsackEngine engine;
+    private volatile KnapsackBlockCipher blockCipher;
+    private volatile KnapsackBatch batch;
+    private volatile KnapsackStreamCipher streamCipher;
+    private volatile KnapsackKeyFile pendingKeyFile; // Loaded key file whose private section is not decoded yet
+    private KnapsackLookupTable lookupTable; // Built from the public key only
+    private long lookupTableBudget; // Bytes of heap for precomputed encrypt tables; 0 disables them
+    private ExecutorService batchExecutor = ForkJoinPool.commonPool();
+    private int batchParallelism = Runtime.getRuntime().availableProcessors();
 
     public void genKeys() {
-        BigInteger curr = BigInteger.ONE;
-        BigInteger tot = BigInteger.ZERO;
-
-        // Generate a superincreasing sequence (private key)
-        ObjectNode wHead = null;
-        ObjectNode wTail = null;
-        for (int i = 0; i < 640; i++) {
-            ObjectNode newNode = new ObjectNode(curr, null);
-            if (wHead == null) {
-                wHead = newNode;
-                wTail = newNode;
-            } else {
-                wTail.setLink(newNode);
-                wTail = newNode;
-            }
-            tot = tot.add(curr);
-            curr = curr.multiply(BigInteger.valueOf(7));
+        genKeys(KeyGenParameters.defaults());
+    }
+
+    public void genKeys(KeyGenParameters params) {
+        KnapsackKeyGenerator generator = new KnapsackKeyGenerator(params);
+        setKeys(generator.generate());
+
+        System.out.printf("Keys generated successfully! (%d elements in %.1f ms)%n",
+                params.getKeyLength(), generator.getLastGenerationNanos() / 1e6);
+    }
+
+    // Install keys, replacing the engine and the encrypt lookup table.
+    public synchronized void setKeys(KnapsackKeys newKeys) {
+        lookupTable = lookupTableBudget > 0 ? KnapsackLookupTable.build(newKeys, lookupTableBudget) : null;
+        install(newKeys);
+    }
+
+    // Install keys given as linked lists: the superincreasing sequence w, the public key b, modulus M and multiplier N.
+    public void setKeys(ObjectNode w, ObjectNode b, BigInteger M, BigInteger N) {
+        setKeys(KnapsackKeys.fromLists(w, b, M, N));
+    }
+
+    // Build the cipher objects over newKeys and the current lookup table; the caller holds the lock.
+    private void install(KnapsackKeys newKeys) {
+        KnapsackEngine newEngine = new KnapsackEngine(newKeys, lookupTable);
+        keys = newKeys;
+        engine = newEngine;
+        blockCipher = new KnapsackBlockCipher(newEngine);
+        batch = new KnapsackBatch(newEngine, batchExecutor, batchParallelism);
+        streamCipher = new KnapsackStreamCipher(newEngine);
+        pendingKeyFile = null; // Last, so a reader that sees null also sees the fields above
+    }
+
+    // Set the memory budget for encrypt lookup tables; takes effect at the next genKeys or setKeys.
+    public synchronized void setLookupTableBudget(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes is negative");
         }
-        w = wHead;
-
-        // Set the modulus greater than the sum of the superincreasing sequence
-        M = tot.add(BigInteger.valueOf(1000));
-
-        // Choose a multiplier N such that gcd(N, M) = 1
-        do {
-            N = new BigInteger(M.bitLength(), new java.util.Random());
-        } while (!M.gcd(N).equals(BigInteger.ONE));
-
-        // Generate the public key using the private key and multiplier
-        ObjectNode bin_head = null;
-        ObjectNode bin_tail = null;
-        ObjectNode tempW = w;
-        while (tempW != null) {
-            BigInteger wi = (BigInteger) tempW.getData();
-            BigInteger bi = N.multiply(wi).mod(M);
-
-            ObjectNode newbin_node = new ObjectNode(bi, null);
-            if (bin_head == null) {
-                bin_head = newbin_node;
-                bin_tail = newbin_node;
-            } else {
-                bin_tail.setLink(newbin_node);
-                bin_tail = newbin_node;
-            }
-            tempW = tempW.getLink();
+        lookupTableBudget = maxBytes;
+    }
+
+    // Choose where batch calls run and how many slices a batch is cut into.
+    public synchronized void setBatchExecutor(ExecutorService executor, int parallelism) {
+        batchExecutor = executor;
+        batchParallelism = parallelism;
+        if (engine != null) {
+            batch = new KnapsackBatch(engine, executor, parallelism);
         }
-        b = bin_head;
+    }
 
-        System.out.println("Keys generated successfully!");
+    // The installed keys; after loadKeys their private half is only present once something has decrypted.
+    public KnapsackKeys getKeys() {
+        return keys;
     }
 
-    public BigInteger encrypt(String message) {
-        // Convert the message to binary
-        StringBuilder binaryMessage = new StringBuilder();
-        for (char c : message.toCharArray()) {
-            binaryMessage.append(String.format("%8s", Integer.toBinaryString(c)).replace(' ', '0'));
-        }
+    // True if the keys can decrypt, counting a loaded private section that is not decoded yet.
+    public boolean hasPrivateKey() {
+        return pendingKeyFile != null || keys.hasPrivateKey();
+    }
 
-        // Calculate the ciphertext by summing weighted public keys for '1' bits
-        BigInteger ciphert = BigInteger.ZERO;
-        ObjectNode bin_node = b;
-        for (int i = 0; i < binaryMessage.length() && bin_node != null; i++) {
-            if (binaryMessage.charAt(i) == '1') {
-                ciphert = ciphert.add((BigInteger) bin_node.getData());
-            }
-            bin_node = bin_node.getLink();
+    // The public key as a new linked list of BigIntegers.
+    public ObjectNode getPublicKeyList() {
+        return KnapsackKeys.toList(keys.publicKey());
+    }
+
+    // The superincreasing sequence as a new linked list of BigIntegers, or null without a private key.
+    public ObjectNode getPrivateKeyList() {
+        loadPrivateKey();
+        KnapsackKeys current = keys;
+        return current.hasPrivateKey() ? KnapsackKeys.toList(current.privateSequence()) : null;
+    }
+
+    // The engine over the full keys, decoding a loaded private section first so it can decrypt.
+    public KnapsackEngine getEngine() {
+        loadPrivateKey();
+        return engine;
+    }
+
+    // Save the current keys; a public key file can be shared with encrypt-only processes.
+    public void saveKeys(Path path, boolean includePrivate) throws IOException {
+        if (includePrivate) {
+            decodePrivateKey();
         }
-        return ciphert;
+        KnapsackKeyFile.write(keys, path, includePrivate);
     }
 
-    public String decrypt(BigInteger ciphert) {
-        // Compute the adjusted ciphertext using the modular inverse of N
-        BigInteger NInverse = N.modInverse(M);
-        BigInteger CPrime = ciphert.multiply(NInverse).mod(M);
-
-        // Recover the binary message from the adjusted ciphertext
-        StringBuilder binaryMessage = new StringBuilder();
-        ObjectNode wNode = w;
-        while (wNode != null) {
-            BigInteger wi = (BigInteger) wNode.getData();
-            if (CPrime.compareTo(wi) >= 0) {
-                binaryMessage.append('1');
-                CPrime = CPrime.subtract(wi);
-            } else {
-                binaryMessage.append('0');
-            }
-            wNode = wNode.getLink();
+    // Load keys from a key file; a private section is only decoded by the first decrypt.
+    public synchronized void loadKeys(Path path) throws IOException {
+        KnapsackKeyFile file = KnapsackKeyFile.open(path);
+        setKeys(file.publicKeys());
+        pendingKeyFile = file.hasPrivateKey() ? file : null;
+    }
+
+    // Decode and install the private section of a loaded key file, once, for the cipher methods.
+    private void loadPrivateKey() {
+        try {
+            decodePrivateKey();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        // Remove leading zeros and pad to align with 8-bit groups
-        int firstOne = binaryMessage.indexOf("1");
-        if (firstOne == -1) {
-            return "";
+    private void decodePrivateKey() throws IOException {
+        if (pendingKeyFile == null) {
+            return;
         }
-        binaryMessage.delete(0, firstOne);
-        while (binaryMessage.length() % 8 != 0) {
-            binaryMessage.insert(0, '0');
+        synchronized (this) {
+            KnapsackKeyFile file = pendingKeyFile;
+            if (file != null) {
+                // The public key is unchanged, so the lookup table built for it is kept.
+                install(file.keys());
+            }
         }
+    }
 
-        // Convert the binary message to plaintext
-        StringBuilder plaintext = new StringBuilder();
-        for (int i = 0; i < binaryMessage.length(); i += 8) {
-            String byteStr = binaryMessage.substring(i, i + 8);
-            int charVal = Integer.parseInt(byteStr, 2);
-            plaintext.append((char) charVal);
-        }
+    public BigInteger encrypt(String message) {
+        // Encrypt the exact UTF-8 bytes, so any char round-trips
+        return encrypt(message.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // Remove any trailing null characters
-        while (plaintext.length() > 0 && plaintext.charAt(plaintext.length() - 1) == '\0') {
-            plaintext.deleteCharAt(plaintext.length() - 1);
-        }
+    // Encrypt up to getKeys().maxMessageBytes() bytes behind a length header, so they decrypt exactly.
+    public BigInteger encrypt(byte[] message) {
+        return engine.encryptMessage(message);
+    }
+
+    // Encrypt a payload of any length as one ciphertext integer per key-sized block.
+    public BigInteger[] encryptBlocks(byte[] payload) {
+        return blockCipher.encrypt(payload);
+    }
+
+    // Reverse encryptBlocks; length is the byte length of the original payload.
+    public byte[] decryptBlocks(BigInteger[] blocks, int length) {
+        loadPrivateKey();
+        return blockCipher.decrypt(blocks, length);
+    }
+
+    // Encrypt many messages with the current key, one ciphertext each.
+    public List<BigInteger> encryptAll(List<String> messages) {
+        return Arrays.asList(batch.encryptAll(messages.toArray(new String[0])));
+    }
+
+    // Encrypt many payloads of at most getKeys().maxMessageBytes() bytes each.
+    public BigInteger[] encryptAll(byte[][] payloads) {
+        return batch.encryptAll(payloads);
+    }
 
-        return plaintext.toString();
+    // Decrypt many ciphertexts produced by encryptAll(List).
+    public List<String> decryptAll(List<BigInteger> ciphertexts) {
+        loadPrivateKey();
+        return Arrays.asList(batch.decryptAllToStrings(ciphertexts.toArray(new BigInteger[0])));
     }
 
-    public static void main(String[] args) {
+    // Decrypt many ciphertexts produced by encryptAll(byte[][]).
+    public byte[][] decryptAll(BigInteger[] ciphertexts) {
+        loadPrivateKey();
+        return batch.decryptAll(ciphertexts);
+    }
+
+    // Encrypt a stream of any length block by block; see KnapsackStreamCipher for the record format.
+    public void encryptStream(InputStream in, OutputStream out) throws IOException {
+        streamCipher.encrypt(in, out);
+    }
+
+    // Reverse encryptStream.
+    public void decryptStream(InputStream in, OutputStream out) throws IOException {
+        loadPrivateKey();
+        streamCipher.decrypt(in, out);
+    }
+
+    public String decrypt(BigInteger ciphert) {
+        return new String(decryptBytes(ciphert), StandardCharsets.UTF_8);
+    }
+
+    // Recover exactly the bytes given to encrypt(byte[]).
+    public byte[] decryptBytes(BigInteger ciphert) {
+        loadPrivateKey();
+        return engine.decryptMessage(ciphert);
+    }
+
+    public static void main(String[] args) throws IOException {
         MerkleHellmanKnapsack mh = new MerkleHellmanKnapsack();
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("Welcome to the Merkle-Hellman Knapsack Cryptosystem!");
 
-        // Generate keys
-        mh.genKeys();
+        // Load keys from the key file named on the command line, or generate them
+        if (args.length > 0 && Files.exists(Paths.get(args[0]))) {
+            mh.loadKeys(Paths.get(args[0]));
+            System.out.println("Keys loaded from " + args[0]);
+        } else {
+            mh.genKeys();
+            if (args.length > 0) {
+                mh.saveKeys(Paths.get(args[0]), true);
+                System.out.println("Keys saved to " + args[0]);
+            }
+        }
 
         // Input the message to encrypt
         System.out.print("Enter a string and I will encrypt it as a single large integer: ");
@@ -139,10 +231,17 @@ public class MerkleHellmanKnapsack {
         // Display the clear text and its byte count
         System.out.println("Clear text:");
         System.out.println(message);
-        System.out.println("Number of clear text bytes = " + message.getBytes().length);
+        byte[] clear = message.getBytes(StandardCharsets.UTF_8);
+        System.out.println("Number of clear text bytes = " + clear.length);
+        if (clear.length > mh.getKeys().maxMessageBytes()) {
+            System.out.println("The message is too long; at most " + mh.getKeys().maxMessageBytes()
+                    + " bytes fit in a single integer.");
+            scanner.close();
+            return;
+        }
 
         // Encrypt the message
-        BigInteger ciphert = mh.encrypt(message);
+        BigInteger ciphert = mh.encrypt(clear);
         System.out.println("Encrypted message:");
 
         // Display the ciphertext in chunks
@@ -151,6 +250,13 @@ public class MerkleHellmanKnapsack {
             System.out.println(ctextStr.substring(i, Math.min(i + 80, ctextStr.length())));
         }
 
+        // A public key file can only encrypt
+        if (!mh.hasPrivateKey()) {
+            System.out.println("The key file has no private key, so the message cannot be decrypted.");
+            scanner.close();
+            return;
+        }
+
         // Decrypt the message
         String decrypted = mh.decrypt(ciphert);
         System.out.println("Result of decryption:");
@@ -0,0 +1,210 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk Merkle tree for one source file. The index stores the source's
+ * size and modification time next to every level's raw hashes, so a later
+ * run can check the metadata and, if the source is unchanged, take the root,
+ * any node hash or any proof straight from the memory-mapped index instead of
+ * rehashing the file.
+ *
+ * Layout (all integers big-endian):
+ * <pre>
+ *   int   magic "MKL2"
+ *   short length n of the hash name
+ *   n x   byte MerkleHasher name, UTF-8
+ *   long  source file size
+ *   long  source last-modified time, in milliseconds
+ *   int   number of levels h
+ *   h x   int hash count of each level, leaves first
+ *   the hashes of each level, the hasher's digestLength() apiece, leaves first
+ * </pre>
+ * The whole index is mapped at once, so it must be smaller than 2 GiB.
+ **/
+public final class MerkleIndexFile {
+    private static final int MAGIC = 0x4D4B4C32; // "MKL2"
+
+    private final MappedByteBuffer mapped;
+    private final MerkleHasher hashing;
+    private final long fileSize;
+    private final long lastModified;
+    private final int[] counts;
+    private final int[] offsets; // Start of each level's hashes in the mapping
+
+    private MerkleIndexFile(MappedByteBuffer mapped, MerkleHasher hashing, long fileSize,
+                            long lastModified, int[] counts, int[] offsets) {
+        this.mapped = mapped;
+        this.hashing = hashing;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.counts = counts;
+        this.offsets = offsets;
+    }
+
+    // Where the index for a source file lives: next to it, with ".merkle" appended.
+    public static Path indexPathFor(Path source) {
+        return Paths.get(source.toString() + ".merkle");
+    }
+
+    /**
+     * Write a tree to index with the source's size and modification time.
+     * Take both before hashing the source: if it changes while it is being
+     * hashed, the recorded metadata then no longer matches and isCurrentFor
+     * makes the next run rebuild, rather than trusting hashes of old content.
+     * @param sourceSize
+     *   the source's size in bytes, read before it was hashed
+     * @param sourceModified
+     *   the source's last-modified time in milliseconds, read before it was hashed
+     **/
+    public static void write(MerkleTree tree, long sourceSize, long sourceModified, Path index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(tree.getHashing().name());
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeInt(tree.getHeight());
+            for (int k = 0; k < tree.getHeight(); k++) {
+                out.writeInt(tree.levelCount(k));
+            }
+            for (int k = 0; k < tree.getHeight(); k++) {
+                out.write(tree.levelHashes(k), 0, tree.levelCount(k) * tree.getHashing().digestLength());
+            }
+        }
+    }
+
+    /**
+     * Map an index file and read its header.
+     * @exception IOException
+     *   Indicates that the file cannot be read or is not a Merkle index.
+     **/
+    public static MerkleIndexFile open(Path index) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            if (channel.size() < 28 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(index + " is not a Merkle index");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IOException(index + " is not a Merkle index");
+        }
+        int nameLength = mapped.getShort(4) & 0xFFFF;
+        if (6L + nameLength + 20 > mapped.capacity()) {
+            throw new IOException(index + " has a corrupt header");
+        }
+        byte[] name = new byte[nameLength];
+        mapped.get(6, name);
+        MerkleHasher hashing;
+        try {
+            hashing = MerkleHasher.forName(new String(name, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(index + " uses an unavailable hash", e);
+        }
+        int pos = 6 + nameLength; // Start of the source file size
+
+        int height = mapped.getInt(pos + 16);
+        int countsAt = pos + 20;
+        if (height <= 0 || countsAt + 4L * height > mapped.capacity()) {
+            throw new IOException(index + " has a corrupt header");
+        }
+        int[] counts = new int[height];
+        int[] offsets = new int[height];
+        long offset = countsAt + 4L * height;
+        for (int k = 0; k < height; k++) {
+            counts[k] = mapped.getInt(countsAt + 4 * k);
+            offsets[k] = (int) Math.min(offset, Integer.MAX_VALUE);
+            offset += (long) counts[k] * hashing.digestLength();
+        }
+        if (offset != mapped.capacity() || counts[height - 1] != 1) {
+            throw new IOException(index + " is truncated or corrupt");
+        }
+        return new MerkleIndexFile(mapped, hashing, mapped.getLong(pos), mapped.getLong(pos + 8), counts, offsets);
+    }
+
+    /**
+     * Whether source still has the size and modification time recorded when
+     * the index was written, i.e. whether the index can be used without
+     * rehashing.
+     **/
+    public boolean isCurrentFor(Path source) throws IOException {
+        return Files.size(source) == fileSize
+                && Files.getLastModifiedTime(source).toMillis() == lastModified;
+    }
+
+    public MerkleHasher getHashing() {
+        return hashing;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getLeafCount() {
+        return counts[0];
+    }
+
+    public int getHeight() {
+        return counts.length;
+    }
+
+    /**
+     * Copy the index into a MerkleTree, without rehashing anything, so it
+     * can be appended to and updated when the source grows.
+     **/
+    public MerkleTree toTree() {
+        int hashBytes = hashing.digestLength();
+        byte[][] levels = new byte[counts.length][];
+        for (int k = 0; k < counts.length; k++) {
+            levels[k] = new byte[counts[k] * hashBytes];
+            mapped.get(offsets[k], levels[k]);
+        }
+        return MerkleTree.fromLevels(hashing, levels, counts.clone());
+    }
+
+    public byte[] root() {
+        return nodeHash(counts.length - 1, 0);
+    }
+
+    /**
+     * Hash of node index on the given level (0 = leaves), read from the mapping.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that there is no such node.
+     **/
+    public byte[] nodeHash(int level, int index) {
+        java.util.Objects.checkIndex(index, counts[level]);
+        int hashBytes = hashing.digestLength();
+        byte[] hash = new byte[hashBytes];
+        mapped.get(offsets[level] + index * hashBytes, hash);
+        return hash;
+    }
+
+    /**
+     * Audit path for one leaf, read from the mapping.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that there is no such leaf.
+     **/
+    public MerkleProof proof(int leafIndex) {
+        java.util.Objects.checkIndex(leafIndex, counts[0]);
+        int hashBytes = hashing.digestLength();
+        byte[] siblings = new byte[(counts.length - 1) * hashBytes];
+        int index = leafIndex;
+        for (int k = 0; k < counts.length - 1; k++) {
+            int sibling = (index ^ 1) < counts[k] ? index ^ 1 : index;
+            mapped.get(offsets[k] + sibling * hashBytes, siblings, k * hashBytes, hashBytes);
+            index >>>= 1;
+        }
+        return new MerkleProof(leafIndex, counts[0], siblings, hashBytes);
+    }
+}
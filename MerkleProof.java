@@ -0,0 +1,83 @@
+/**
+ * Audit path for one leaf of a MerkleTree: the sibling hash at each level
+ * from the leaf up to just below the root. Whether a sibling sits on the
+ * left or the right follows from the bits of the leaf index.
+ *
+ * The proof also carries the tree's leaf count. Because an odd last node is
+ * paired with itself, an index past the end could otherwise reproduce the
+ * root from a real leaf's path; verify checks the count against the one the
+ * verifier expects and only pairs a node with itself where that count makes
+ * it the odd last node of its level.
+ **/
+public final class MerkleProof {
+    private final int leafIndex;
+    private final int leafCount;
+    private final byte[] siblings; // Packed, hashBytes per level, leaf level first
+    private final int hashBytes;
+
+    public MerkleProof(int leafIndex, int leafCount, byte[] siblings, int hashBytes) {
+        if (leafIndex < 0 || leafIndex >= leafCount || hashBytes <= 0 || siblings.length % hashBytes != 0) {
+            throw new IllegalArgumentException("malformed proof");
+        }
+        this.leafIndex = leafIndex;
+        this.leafCount = leafCount;
+        this.siblings = siblings;
+        this.hashBytes = hashBytes;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    // Number of leaves in the tree the proof was taken from.
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    // Number of sibling hashes, i.e. the height of the tree above the leaves.
+    public int length() {
+        return siblings.length / hashBytes;
+    }
+
+    // Sibling at the given level (0 = the leaf's own sibling).
+    public byte[] sibling(int level) {
+        int off = level * hashBytes;
+        return java.util.Arrays.copyOfRange(siblings, off, off + hashBytes);
+    }
+
+    /**
+     * Check that leafHash, combined with the siblings in this proof, hashes
+     * to root in a tree of leafCount leaves. Costs one combine per level.
+     * @return
+     *   false if the proof is for a different leaf count, its index is not
+     *   below leafCount, its length does not match that tree's height, or the
+     *   hashes do not reach root
+     **/
+    public boolean verify(MerkleHasher hashing, byte[] leafHash, byte[] root, int leafCount) {
+        if (leafCount != this.leafCount || leafIndex >= leafCount
+                || hashing.digestLength() != hashBytes || leafHash.length != hashBytes) {
+            return false;
+        }
+        byte[] current = leafHash.clone();
+        int index = leafIndex;
+        int count = leafCount; // Nodes on the current level
+        int level = 0;
+        for (; count > 1; level++) {
+            if (level == length()) {
+                return false;
+            }
+            int off = level * hashBytes;
+            if ((index & 1) == 0 && index == count - 1) {
+                // The odd last node, and only it, is paired with itself.
+                hashing.combine(current, 0, current, 0, current, 0);
+            } else if ((index & 1) == 0) {
+                hashing.combine(current, 0, siblings, off, current, 0);
+            } else {
+                hashing.combine(siblings, off, current, 0, current, 0);
+            }
+            index >>>= 1;
+            count = (count + 1) / 2;
+        }
+        return level == length() && java.util.Arrays.equals(current, root);
+    }
+}
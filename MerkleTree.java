@@ -0,0 +1,197 @@
+/**
+ * A Merkle tree kept in memory as one packed array of hashes per level, so
+ * inclusion proofs can be served after the root is known. Level 0 holds the
+ * leaf hashes and the last level holds the root. As everywhere else in this
+ * project, an odd last hash on a level is paired with itself.
+ *
+ * Leaves can be appended or replaced after the tree is built; either
+ * operation rehashes only the O(log n) path from that leaf to the root.
+ * Level arrays grow by doubling, so appends are amortized O(log n) too.
+ **/
+public class MerkleTree {
+    private final MerkleHasher hashing;
+    private final int hashBytes;
+    private byte[][] levels;
+    private int[] counts;
+
+    // An empty tree, to be filled with append.
+    public MerkleTree(MerkleHasher hashing) {
+        this(hashing, new byte[][] { new byte[16 * hashing.digestLength()] }, new int[] { 0 });
+    }
+
+    private MerkleTree(MerkleHasher hashing, byte[][] levels, int[] counts) {
+        this.hashing = hashing;
+        this.hashBytes = hashing.digestLength();
+        this.levels = levels;
+        this.counts = counts;
+    }
+
+    /**
+     * Build a tree over count packed leaf hashes. The hashes are copied, so
+     * the caller may reuse the array; later updates to the tree do not
+     * write through to it.
+     * @exception IllegalArgumentException
+     *   Indicates that count is zero or the array is too short.
+     **/
+    public static MerkleTree build(MerkleHasher hashing, byte[] leafHashes, int count) {
+        if (count <= 0 || leafHashes.length < count * hashing.digestLength()) {
+            throw new IllegalArgumentException("a tree needs at least one leaf hash");
+        }
+        int height = 1;
+        for (int n = count; n > 1; n = (n + 1) / 2) {
+            height++;
+        }
+        byte[][] levels = new byte[height][];
+        int[] counts = new int[height];
+        levels[0] = java.util.Arrays.copyOf(leafHashes, count * hashing.digestLength());
+        counts[0] = count;
+        for (int k = 1; k < height; k++) {
+            levels[k] = hashing.nextLevel(levels[k - 1], counts[k - 1]);
+            counts[k] = (counts[k - 1] + 1) / 2;
+        }
+        return new MerkleTree(hashing, levels, counts);
+    }
+
+    // A tree over levels that are already hashed, such as those read back from a MerkleIndexFile; they are not checked.
+    static MerkleTree fromLevels(MerkleHasher hashing, byte[][] levels, int[] counts) {
+        return new MerkleTree(hashing, levels, counts);
+    }
+
+    public MerkleHasher getHashing() {
+        return hashing;
+    }
+
+    public int getLeafCount() {
+        return counts[0];
+    }
+
+    // Number of levels, counting the leaves and the root.
+    public int getHeight() {
+        return levels.length;
+    }
+
+    public int levelCount(int level) {
+        return counts[level];
+    }
+
+    // Backing array of a level; only the first levelCount(level) hashes are meaningful.
+    byte[] levelHashes(int level) {
+        return levels[level];
+    }
+
+    // The root hash, or null if the tree has no leaves.
+    public byte[] root() {
+        return counts[0] == 0 ? null : nodeHash(levels.length - 1, 0);
+    }
+
+    public byte[] leafHash(int index) {
+        return nodeHash(0, index);
+    }
+
+    /**
+     * Hash of node index on the given level (0 = leaves).
+     * @exception IndexOutOfBoundsException
+     *   Indicates that there is no such node.
+     **/
+    public byte[] nodeHash(int level, int index) {
+        java.util.Objects.checkIndex(index, counts[level]);
+        int off = index * hashBytes;
+        return java.util.Arrays.copyOfRange(levels[level], off, off + hashBytes);
+    }
+
+    /**
+     * Audit path for one leaf.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that there is no such leaf.
+     **/
+    public MerkleProof proof(int leafIndex) {
+        java.util.Objects.checkIndex(leafIndex, counts[0]);
+        byte[] siblings = new byte[(levels.length - 1) * hashBytes];
+        int index = leafIndex;
+        for (int k = 0; k < levels.length - 1; k++) {
+            // An odd last node is its own sibling.
+            int sibling = (index ^ 1) < counts[k] ? index ^ 1 : index;
+            System.arraycopy(levels[k], sibling * hashBytes,
+                    siblings, k * hashBytes, hashBytes);
+            index >>>= 1;
+        }
+        return new MerkleProof(leafIndex, counts[0], siblings, hashBytes);
+    }
+
+    // Append a leaf hash read from hash at off, rehashing the path to the new root.
+    public void append(byte[] hash, int off) {
+        appendAll(hash, off, 1);
+    }
+
+    public void append(byte[] hash) {
+        append(hash, 0);
+    }
+
+    /**
+     * Append count packed leaf hashes read from hashes at off. Only the nodes
+     * to the right of the old last leaf's path are rehashed, so appending k
+     * leaves costs O(k + log n) combines.
+     **/
+    public void appendAll(byte[] hashes, int off, int count) {
+        if (count == 0) {
+            return;
+        }
+        int first = counts[0];
+        levels[0] = ensureCapacity(levels[0], first + count);
+        System.arraycopy(hashes, off, levels[0], first * hashBytes, count * hashBytes);
+        counts[0] += count;
+        rehash(first, counts[0] - 1);
+    }
+
+    /**
+     * Replace the hash of an existing leaf, rehashing the path to the root.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that there is no such leaf.
+     **/
+    public void update(int leafIndex, byte[] hash, int off) {
+        java.util.Objects.checkIndex(leafIndex, counts[0]);
+        System.arraycopy(hash, off, levels[0], leafIndex * hashBytes, hashBytes);
+        rehash(leafIndex, leafIndex);
+    }
+
+    public void update(int leafIndex, byte[] hash) {
+        update(leafIndex, hash, 0);
+    }
+
+    // Recompute the ancestors of leaves from..to, adding levels on top when the tree gets taller.
+    private void rehash(int from, int to) {
+        int k = 0;
+        while (counts[k] > 1) {
+            int parents = (counts[k] + 1) / 2;
+            if (k + 1 == levels.length) {
+                levels = java.util.Arrays.copyOf(levels, levels.length + 1);
+                counts = java.util.Arrays.copyOf(counts, counts.length + 1);
+                levels[k + 1] = new byte[0];
+            }
+            levels[k + 1] = ensureCapacity(levels[k + 1], parents);
+            counts[k + 1] = parents;
+
+            from >>>= 1;
+            to >>>= 1;
+            for (int parent = from; parent <= to; parent++) {
+                int left = 2 * parent * hashBytes;
+                int right = 2 * parent + 1 < counts[k] ? left + hashBytes : left;
+                hashing.combine(levels[k], left, levels[k], right, levels[k + 1], parent * hashBytes);
+            }
+            k++;
+        }
+    }
+
+    private byte[] ensureCapacity(byte[] level, int count) {
+        int needed = count * hashBytes;
+        if (needed <= level.length) {
+            return level;
+        }
+        return java.util.Arrays.copyOf(level, Math.max(needed, 2 * level.length));
+    }
+
+    // Check a leaf and its proof against this tree's root.
+    public boolean verify(byte[] leafHash, MerkleProof proof) {
+        return counts[0] > 0 && proof.verify(hashing, leafHash, root(), counts[0]);
+    }
+}
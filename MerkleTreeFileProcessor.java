@@ -3,20 +3,29 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
 
 public class MerkleTreeFileProcessor {
+    // Target hash to match.
+    static final String TARGET_HASH = "A5A74A770E0C3922362202DAD62A97655F8652064CCCBE7D3EA2B588C7E07B58";
 
     // Hashing method using SHA-256, producing a 64-character hex string.
     public static String h(String text) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < 32; i++) {
-            sb.append(String.format("%02X", hash[i]));
+        return MerkleHashing.toHex(MerkleHashing.HEX_CONCAT.hashLeaf(text));
+    }
+
+    // Names a hash for output: MessageDigest hashes also say how parents are formed, since that changes the root.
+    static String hashLabel(MerkleHasher hashing) {
+        if (hashing instanceof MerkleHashing) {
+            MerkleHashing digest = (MerkleHashing) hashing;
+            return digest.getAlgorithm() + (digest.getMode() == MerkleHashing.Mode.RAW ? ", raw parents" : ", hex parents");
         }
-        return sb.toString();
+        return hashing.name();
     }
 
     // Reads a file and converts its lines into a linked list of ObjectNodes.
@@ -41,46 +50,198 @@ public class MerkleTreeFileProcessor {
         return headNode; // Return the head of the linked list.
     }
 
-    // Builds a Merkle tree from a linked list and returns the root hash.
-    private static String buildMerkleTree(ObjectNode node) throws NoSuchAlgorithmException {
-        // Step 1: Convert the linked list data into a list of hashes (Merkle tree leaves).
-        java.util.List<String> hashList = new java.util.ArrayList<>();
-        ObjectNode currentNode = node;
-        while (currentNode != null) {
-            hashList.add(h(currentNode.getData().toString())); // Hash each node's data.
-            currentNode = currentNode.getLink();
-        }
-
-        // If the linked list is empty, return null as there is no data to process.
-        if (hashList.isEmpty()) {
-            return null;
-        }
-
-        // Step 2: Construct the Merkle tree level by level.
-        while (hashList.size() > 1) {
-            java.util.List<String> nextLevel = new java.util.ArrayList<>();
-            for (int i = 0; i < hashList.size(); i += 2) {
-                if (i + 1 < hashList.size()) {
-                    // Combine two adjacent hashes and compute their hash.
-                    String combined = hashList.get(i) + hashList.get(i + 1);
-                    nextLevel.add(h(combined));
-                } else {
-                    // If there's an odd number of hashes, duplicate the last hash.
-                    String combined = hashList.get(i) + hashList.get(i);
-                    nextLevel.add(h(combined));
+    // Reads a file's trimmed lines into an unrolled list, many lines to a node.
+    static UnrolledObjectNode readFileToUnrolledNodes(String path) throws IOException {
+        UnrolledObjectNode head = new UnrolledObjectNode();
+        UnrolledObjectNode tail = head;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String data;
+            while ((data = reader.readLine()) != null) {
+                tail = tail.append(data.trim());
+            }
+        }
+        return head.size() == 0 ? null : head;
+    }
+
+    // Builds a Merkle tree from a linked list with the given hash function and returns the root hash.
+    static String buildMerkleTree(ObjectNode node, MerkleHasher hashing) {
+        // Step 1: Hash the linked list data into one packed array of leaf hashes.
+        int count = ObjectNode.listLength(node);
+        int hashBytes = hashing.digestLength();
+        byte[] leaves = new byte[count * hashBytes];
+        int i = 0;
+        for (ObjectNode currentNode = node; currentNode != null; currentNode = currentNode.getLink()) {
+            byte[] data = currentNode.getData().toString().getBytes(StandardCharsets.UTF_8);
+            hashing.hashLeaf(data, 0, data.length, leaves, i * hashBytes);
+            i++;
+        }
+
+        // Step 2: Combine the levels up to the root; hex is produced only for the result.
+        byte[] root = hashing.root(leaves, count);
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
+
+    // Builds a Merkle tree from an unrolled list of lines and returns the root hash.
+    static String buildMerkleTree(UnrolledObjectNode head, MerkleHasher hashing) {
+        int count = UnrolledObjectNode.listLength(head);
+        int hashBytes = hashing.digestLength();
+        byte[] leaves = new byte[count * hashBytes];
+        int i = 0;
+        for (UnrolledObjectNode node = head; node != null; node = node.getLink()) {
+            for (int j = 0; j < node.size(); j++) {
+                byte[] data = node.getData(j).toString().getBytes(StandardCharsets.UTF_8);
+                hashing.hashLeaf(data, 0, data.length, leaves, i++ * hashBytes);
+            }
+        }
+        byte[] root = hashing.root(leaves, count);
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
+
+    // Builds a Merkle tree from a linked list, hashing leaves in parallel, and returns the root hash.
+    static String buildMerkleTreeParallel(ObjectNode node, ParallelMerkleBuilder builder) {
+        byte[] root = builder.root(node);
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
+
+    // Computes a file's Merkle root while reading it, one trimmed line per leaf, in O(log n) memory.
+    static String streamMerkleRoot(String path, MerkleHasher hashing) throws IOException {
+        StreamingMerkleBuilder builder = new StreamingMerkleBuilder(hashing);
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String data;
+            while ((data = reader.readLine()) != null) {
+                builder.addLeaf(data.trim());
+            }
+        }
+        byte[] root = builder.root();
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
+
+    // Computes a file's Merkle root from a memory mapping, hashing trimmed line bytes without decoding them.
+    static String mappedMerkleRoot(String path, MerkleHasher hashing) throws IOException {
+        StreamingMerkleBuilder builder = new StreamingMerkleBuilder(hashing);
+        new MappedLeafScanner(hashing).scan(Paths.get(path), builder::addLeafHash);
+        byte[] root = builder.root();
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
+
+    // Builds and keeps a file's whole Merkle tree, one trimmed line per leaf, so proofs can be served from it.
+    static MerkleTree buildTree(String path, MerkleHasher hashing) throws IOException {
+        MerkleTree tree = new MerkleTree(hashing);
+        appendLines(tree, path, 0, Long.MAX_VALUE);
+        return tree.getLeafCount() == 0 ? null : tree;
+    }
+
+    // Appends the lines in bytes [start, end) of a file (start must begin a line) to an existing tree.
+    static void appendLines(MerkleTree tree, String path, long start, long end) throws IOException {
+        LeafHashBuffer leaves = new LeafHashBuffer(tree.getHashing().digestLength());
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            new MappedLeafScanner(tree.getHashing()).scan(channel, start, Math.min(end, channel.size()), leaves);
+        }
+        // Rehash the new leaves' ancestors once, rather than once per appended line.
+        tree.appendAll(leaves.hashes(), 0, leaves.count());
+    }
+
+    // Brings a tree over a file's first oldSize bytes up to date with the lines appended up to newSize, rehashing
+    // only the old last line (which may have had no terminator) and the new ones. Returns false if the old last
+    // line no longer hashes the same, i.e. the file was rewritten rather than appended to.
+    static boolean appendGrowth(MerkleTree tree, String path, long oldSize, long newSize) throws IOException {
+        int hashBytes = tree.getHashing().digestLength();
+        int last = tree.getLeafCount() - 1;
+        MappedLeafScanner scanner = new MappedLeafScanner(tree.getHashing());
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long lastLine = MappedLeafScanner.lastLineStart(channel, oldSize);
+            LeafHashBuffer old = new LeafHashBuffer(hashBytes);
+            scanner.scan(channel, lastLine, oldSize, old);
+            if (old.count() != 1
+                    || !java.util.Arrays.equals(old.hashes(), 0, hashBytes, tree.leafHash(last), 0, hashBytes)) {
+                return false;
+            }
+            LeafHashBuffer leaves = new LeafHashBuffer(hashBytes);
+            scanner.scan(channel, lastLine, newSize, leaves);
+            tree.update(last, leaves.hashes(), 0);
+            tree.appendAll(leaves.hashes(), hashBytes, leaves.count() - 1);
+        }
+        return true;
+    }
+
+    // Returns a file's Merkle root from its index when the file is unchanged, extends the saved tree when the file
+    // only grew, and otherwise rebuilds; the index is saved again in both of the latter cases.
+    static String indexedMerkleRoot(String path, MerkleHasher hashing) throws IOException {
+        Path source = Paths.get(path);
+        Path indexPath = MerkleIndexFile.indexPathFor(source);
+        MerkleIndexFile index = null;
+        if (Files.exists(indexPath)) {
+            try {
+                index = MerkleIndexFile.open(indexPath);
+                if (!index.getHashing().name().equals(hashing.name())) {
+                    index = null;
+                } else if (index.isCurrentFor(source)) {
+                    return MerkleHashing.toHex(index.root());
                 }
+            } catch (IOException e) {
+                index = null; // An unreadable index is rebuilt below.
+            }
+        }
+
+        // Metadata from before the scan, and only bytes up to that size are hashed, so the index never covers more
+        // than it records and a change during the scan makes it stale rather than wrong.
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        MerkleTree tree = null;
+        if (index != null && size > index.getFileSize()) {
+            // Rows appended since the index was written cost their own hashes plus O(log n) combines each.
+            tree = index.toTree();
+            if (!appendGrowth(tree, path, index.getFileSize(), size)) {
+                tree = null;
             }
-            hashList = nextLevel; // Move to the next level of the tree.
         }
+        if (tree == null) {
+            tree = new MerkleTree(hashing);
+            appendLines(tree, path, 0, size);
+            if (tree.getLeafCount() == 0) {
+                return null;
+            }
+        }
+        try {
+            MerkleIndexFile.write(tree, size, modified, indexPath);
+        } catch (IOException e) {
+            // The index is only a cache; the next run rehashes the file (open rejects a partial index).
+        }
+        return MerkleHashing.toHex(tree.root());
+    }
 
-        // Step 3: Return the single remaining hash as the Merkle root.
-        return hashList.get(0);
+    // Computes a file's Merkle root with one trimmed line per leaf, built the way mode names.
+    static String lineMerkleRoot(String mode, String path, MerkleHasher hashing) throws IOException {
+        if (mode.equals("indexed")) {
+            return indexedMerkleRoot(path, hashing);
+        } else if (mode.equals("list")) {
+            return buildMerkleTree(readFileToObjectNode(path), hashing);
+        } else if (mode.equals("parallel")) {
+            return buildMerkleTreeParallel(readFileToObjectNode(path), new ParallelMerkleBuilder(hashing));
+        } else if (mode.equals("stream")) {
+            return streamMerkleRoot(path, hashing);
+        } else if (mode.equals("mapped")) {
+            return mappedMerkleRoot(path, hashing);
+        } else if (mode.equals("unrolled")) {
+            return buildMerkleTree(readFileToUnrolledNodes(path), hashing);
+        }
+        throw new IllegalArgumentException("unknown mode: " + mode);
     }
 
-    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
-        // Target hash to match.
-        final String targetHash = "A5A74A770E0C3922362202DAD62A97655F8652064CCCBE7D3EA2B588C7E07B58";
+    // Computes a file's Merkle root with byte chunks as leaves, recording each chunk with the deduplicator.
+    static String chunkedMerkleRoot(String path, ChunkedLeafScanner scanner, MerkleHasher hashing,
+                                    ChunkDeduplicator dedup) throws IOException {
+        StreamingMerkleBuilder builder = new StreamingMerkleBuilder(hashing);
+        Path source = Paths.get(path);
+        scanner.scan(source, (offset, length, hash, off) -> {
+            dedup.record(source, offset, length, hash, off);
+            builder.addLeafHash(hash, off);
+        });
+        byte[] root = builder.root();
+        return root == null ? null : MerkleHashing.toHex(root);
+    }
 
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
         // List of file paths to process.
         String[] filePaths = {
                 "src/smallFile.txt",
@@ -89,19 +250,56 @@ public class MerkleTreeFileProcessor {
                 "src/CrimeLatLonXY1990_Size3.csv"
         };
 
+        // SHA-256 by default; "hash:<name>" picks another MerkleHasher, e.g. hash:SHA3-256 or hash:Murmur3-128.
+        // A bare digest name hashes parents raw; add +hex (hash:SHA-256+hex is the default) for the original parents.
+        MerkleHasher hashing = MerkleHashing.HEX_CONCAT;
+        for (String arg : args) {
+            if (arg.startsWith("hash:")) {
+                hashing = MerkleHasher.forName(arg.substring(5));
+            }
+        }
+
+        // Lines are decoded and streamed by default; "mode:<name>" builds the same root another way:
+        // mode:list, mode:unrolled or mode:parallel. mode:mapped and mode:indexed hash raw line bytes,
+        // which only match for input valid in the default charset, and mode:indexed saves a .merkle
+        // index next to each file.
+        String mode = "stream";
+        for (String arg : args) {
+            if (arg.startsWith("mode:")) {
+                mode = arg.substring(5);
+            }
+        }
+
+        // Leaves are lines by default; "fixed:<bytes>" or "cdc:<average bytes>" selects byte chunks.
+        ChunkedLeafScanner chunker = null;
+        ChunkDeduplicator dedup = new ChunkDeduplicator(hashing.digestLength());
+        for (String arg : args) {
+            if (arg.startsWith("fixed:")) {
+                chunker = ChunkedLeafScanner.fixed(hashing, Integer.parseInt(arg.substring(6)));
+            } else if (arg.startsWith("cdc:")) {
+                chunker = ChunkedLeafScanner.contentDefined(hashing, Integer.parseInt(arg.substring(4)));
+            }
+        }
+
         // Process each file and compute its Merkle root.
         for (String path : filePaths) {
-            // Create a linked list from the file's data.
-            ObjectNode dataNode = readFileToObjectNode(path);
-
-            // Build the Merkle tree and compute the root hash.
-            String merkleHash = buildMerkleTree(dataNode);
-            System.out.println("File: " + path + " -> Merkle Root: " + merkleHash);
+            // Byte chunks if asked for, otherwise line leaves the chosen way.
+            String merkleHash = chunker != null
+                    ? chunkedMerkleRoot(path, chunker, hashing, dedup)
+                    : lineMerkleRoot(mode, path, hashing);
+            // Roots from anything but the original SHA-256 are labelled with their hash and parent mode.
+            String label = hashing == MerkleHashing.HEX_CONCAT ? "" : " (" + hashLabel(hashing) + ")";
+            System.out.println("File: " + path + " -> Merkle Root" + label + ": " + merkleHash);
 
             // Check if the computed root hash matches the target hash.
-            if (merkleHash != null && merkleHash.equalsIgnoreCase(targetHash)) {
+            if (merkleHash != null && merkleHash.equalsIgnoreCase(TARGET_HASH)) {
                 System.out.println("Match found! The file with the target Merkle root is: " + path);
             }
         }
+
+        if (chunker != null) {
+            System.out.println(dedup.getDuplicateChunks() + " of " + dedup.getChunks()
+                    + " chunks were duplicates (" + dedup.getDuplicateBytes() + " bytes)");
+        }
     }
 }
@@ -110,13 +110,9 @@ public class ObjectNode
         return copyHead;
     }
 
+    // Copy a list and return the head of the copy, as listCopy does.
     public static ObjectNode listCopy_rec(ObjectNode source){
-        if(source==null)
-            return null;
-
-        ObjectNode node= new ObjectNode(source.data,null);
-        node.link=listCopy_rec(source.link);
-        return node;
+        return listCopy(source);
     }
 
 
@@ -183,11 +179,9 @@ public class ObjectNode
 
         return answer;
     }
+    // Count the nodes in a list, as listLength does.
     public static int listLength_rec(ObjectNode head){
-        if (head==null){
-            return 0;
-        }
-        return 1+listLength_rec(head.link);
+        return listLength(head);
     }
 
     public void displayEveryThird(){
@@ -393,15 +387,17 @@ public class ObjectNode
 
     }
 }
-class SinglyLinkedList {
+class SinglyLinkedList implements Iterable<Object> {
     private ObjectNode head;
     private ObjectNode tail;
     private ObjectNode iterator;
+    private int size;
 
     public SinglyLinkedList() {
         head = null;
         tail = null;
         iterator = null;
+        size = 0;
     }
     public void add(Object data) {
         ObjectNode newNode = new ObjectNode(data, null);
@@ -412,6 +408,133 @@ class SinglyLinkedList {
             tail.setLink(newNode);
             tail = newNode;
         }
+        size++;
+    }
+
+    /**
+     * Appends a copy of every item in a chain of nodes, in O(k) for k nodes.
+     *
+     * @param source The head of the chain to copy; may be null.
+     */
+    public void addAll(ObjectNode source) {
+        ObjectNode[] copy = ObjectNode.listCopyWithTail(source);
+        if (copy[0] == null) {
+            return;
+        }
+        link(copy[0], copy[1], ObjectNode.listLength(copy[0]));
+    }
+
+    /**
+     * Moves every node of another list onto the end of this one in O(1).
+     * The other list is left empty.
+     *
+     * @param other The list whose nodes are moved; must not be this list.
+     */
+    public void appendAll(SinglyLinkedList other) {
+        if (other == this) {
+            throw new IllegalArgumentException("cannot append a list to itself");
+        }
+        if (other.head == null) {
+            return;
+        }
+        link(other.head, other.tail, other.size);
+        other.clear();
+    }
+
+    /**
+     * Moves every node of another list into this one, after the first
+     * position nodes. The other list is left empty. Splicing at the end
+     * (position == size()) is O(1); elsewhere it walks position nodes.
+     *
+     * @param position How many of this list's nodes come before the spliced ones.
+     * @param other The list whose nodes are moved; must not be this list.
+     */
+    public void splice(int position, SinglyLinkedList other) {
+        if (position < 0 || position > size) {
+            throw new IndexOutOfBoundsException("position " + position + " is outside 0.." + size);
+        }
+        if (other == this) {
+            throw new IllegalArgumentException("cannot splice a list into itself");
+        }
+        if (other.head == null) {
+            return;
+        }
+        if (position == size) {
+            appendAll(other);
+            return;
+        }
+        if (position == 0) {
+            other.tail.setLink(head);
+            head = other.head;
+        } else {
+            ObjectNode before = ObjectNode.listPosition(head, position);
+            other.tail.setLink(before.getLink());
+            before.setLink(other.head);
+        }
+        size += other.size;
+        other.clear();
+    }
+
+    /**
+     * Splits this list in two in O(position): this list keeps its first
+     * position nodes and the rest are moved to the returned list.
+     *
+     * @param position How many nodes stay in this list.
+     * @return A new list holding the nodes after the first position.
+     */
+    public SinglyLinkedList splitAt(int position) {
+        if (position < 0 || position > size) {
+            throw new IndexOutOfBoundsException("position " + position + " is outside 0.." + size);
+        }
+        SinglyLinkedList rest = new SinglyLinkedList();
+        if (position == size) {
+            return rest;
+        }
+        if (position == 0) {
+            rest.link(head, tail, size);
+            clear();
+            return rest;
+        }
+        ObjectNode last = ObjectNode.listPosition(head, position);
+        rest.link(last.getLink(), tail, size - position);
+        last.setLink(null);
+        tail = last;
+        size = position;
+        return rest;
+    }
+
+    /**
+     * Sorts the list in place with a stable merge sort that relinks the
+     * existing nodes.
+     *
+     * @param comparator The order to sort the items in.
+     */
+    public <T> void sort(java.util.Comparator<? super T> comparator) {
+        head = ObjectNodeSort.sort(head, comparator);
+        tail = head;
+        while (tail != null && tail.getLink() != null) {
+            tail = tail.getLink();
+        }
+        iterator = null;
+    }
+
+    // Empties the list without touching its former nodes.
+    public void clear() {
+        head = null;
+        tail = null;
+        iterator = null;
+        size = 0;
+    }
+
+    // Links the chain first..last, holding count nodes, onto the end of this list.
+    private void link(ObjectNode first, ObjectNode last, int count) {
+        if (head == null) {
+            head = first;
+        } else {
+            tail.setLink(first);
+        }
+        tail = last;
+        size += count;
     }
     public void reset() {
         iterator = head;
@@ -429,6 +552,53 @@ class SinglyLinkedList {
         iterator = iterator.getLink();
         return data;
     }
+
+    /**
+     * Returns a new iterator with its own cursor, unlike reset/hasNext/next,
+     * which share one cursor between all callers.
+     *
+     * @return An iterator over the items from the head.
+     */
+    @Override
+    public java.util.Iterator<Object> iterator() {
+        return new java.util.Iterator<Object>() {
+            private ObjectNode cursor = head;
+
+            @Override
+            public boolean hasNext() {
+                return cursor != null;
+            }
+
+            @Override
+            public Object next() {
+                if (cursor == null) {
+                    throw new java.util.NoSuchElementException();
+                }
+                Object data = cursor.getData();
+                cursor = cursor.getLink();
+                return data;
+            }
+        };
+    }
+
+    /**
+     * Returns a sized spliterator over the items, which splits off batches
+     * for parallel streams.
+     *
+     * @return A spliterator with its own cursor.
+     */
+    @Override
+    public java.util.Spliterator<Object> spliterator() {
+        return new ObjectNodeSpliterator(head, size);
+    }
+
+    public java.util.stream.Stream<Object> stream() {
+        return java.util.stream.StreamSupport.stream(spliterator(), false);
+    }
+
+    public java.util.stream.Stream<Object> parallelStream() {
+        return java.util.stream.StreamSupport.stream(spliterator(), true);
+    }
     /**
      * Displays the contents of the list.
      */
@@ -442,12 +612,12 @@ class SinglyLinkedList {
     }
 
     /**
-     * Returns the size of the list.
+     * Returns the size of the list, kept up to date by every change, in O(1).
      *
      * @return The number of nodes in the list.
      */
     public int size() {
-        return ObjectNode.listLength(head);
+        return size;
     }
 
     public static void main(String[] args) {
@@ -475,40 +645,70 @@ class SinglyLinkedList {
     }
 }
 
+/**
+ * Ordered collection of ints, kept in an IntSkipList so that sortedAdd,
+ * contains, rank and range queries are O(log n) and no value is boxed.
+ * Duplicates are kept. toObjectNodes gives the values as an ObjectNode
+ * chain, the form merge works on.
+ */
 class OrderedLinkedListOfIntegers{
-    private ObjectNode head;
-    public OrderedLinkedListOfIntegers(){
-        ObjectNode head =null;
-        ObjectNode link =null;
+    private final IntSkipList values;
 
+    public OrderedLinkedListOfIntegers(){
+        values = new IntSkipList();
     }
+
+    // Adds data after any equal values, in O(log n).
     public void sortedAdd(int data){
-        ObjectNode newnode=new ObjectNode(data,null);
-        if (head==null){
-            head=newnode;
-        }
-        else{
-            ObjectNode cur=head;
-            ObjectNode prev=null;
+        values.add(data);
+    }
 
-            if (data<(Integer)cur.getData()){
-                newnode.setLink(cur);
-                head=newnode;
+    // Adds many values at once: sorts them and relinks the list in O(n log n).
+    public void addAll(int[] data){
+        values.addAll(data);
+    }
 
+    public boolean remove(int data){
+        return values.remove(data);
+    }
 
-            }
+    public boolean contains(int data){
+        return values.contains(data);
+    }
 
-            else{
-                while(cur!=null && (Integer)cur.getData()>=data)
-                {
-                    prev=cur;
-                    cur=cur.getLink();
-                }
-                prev.setLink(newnode);
-                newnode.setLink(cur);
-            }}
+    // Number of values less than data.
+    public int rank(int data){
+        return values.rank(data);
+    }
+
+    // The value at index in sorted order, from 0.
+    public int get(int index){
+        return values.get(index);
+    }
+
+    // The values in [from, to], inclusive, in order.
+    public int[] range(int from, int to){
+        return values.range(from, to);
     }
 
+    public int size(){
+        return values.size();
+    }
+
+    public int[] toArray(){
+        return values.toArray();
+    }
+
+    // The values in order as a chain of ObjectNodes holding Integers, or null if there are none.
+    public ObjectNode toObjectNodes(){
+        int[] sorted = values.toArray();
+        ObjectNode head = null;
+        for (int i = sorted.length - 1; i >= 0; i--)
+            head = new ObjectNode(sorted[i], head);
+        return head;
+    }
+
+    // Merges two sorted chains of Integer nodes into one sorted chain, relinking their nodes.
     public static ObjectNode merge(ObjectNode head1,ObjectNode head2)
     {
         ObjectNode dummy= new ObjectNode(0,null);
@@ -524,15 +724,9 @@ class OrderedLinkedListOfIntegers{
                 cur=cur.getLink();
                 head2=head2.getLink();
             }
-            if (head1==null){
-                cur.setLink(head2);
-
-            }
-
-            else if (head2==null){
-                cur.setLink(head1);
-            }
         }
+        // Whatever is left of either list, including all of it if the other was empty, follows in order.
+        cur.setLink(head1!=null ? head1 : head2);
         return dummy.getLink();
     }
 }
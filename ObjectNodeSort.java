@@ -0,0 +1,261 @@
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sorting and merging for ObjectNode chains that relink the existing nodes
+ * rather than copying data out to an array. All of these are stable: nodes
+ * whose data compare equal keep their original order, and in a merge the
+ * earlier run wins ties.
+ *
+ * sort is a bottom-up merge sort using a fixed table of 64 pending runs, one
+ * per power of two, so it allocates nothing per node. mergeAll merges many
+ * sorted runs through a binary heap of run heads, O(n log k) for k runs.
+ * parallelSort cuts the chain into pieces, sorts them on a fork-join pool
+ * and merges the sorted pieces pairwise in parallel as well.
+ *
+ * The comparator is applied to each node's getData(); the caller is
+ * responsible for every node holding data of the comparator's type.
+ **/
+public final class ObjectNodeSort {
+    // Pieces of at most this many nodes are sorted on one thread.
+    public static final int DEFAULT_THRESHOLD = 8192;
+
+    private ObjectNodeSort() {
+    }
+
+    /**
+     * Sort a chain in place.
+     * @param head
+     *   the head of the chain to sort (which may be null)
+     * @param comparator
+     *   the order to sort the nodes' data in
+     * @return
+     *   the head of the sorted chain, made of the same nodes
+     * @exception ClassCastException
+     *   Indicates that a node's data is not of the comparator's type.
+     **/
+    public static <T> ObjectNode sort(ObjectNode head, Comparator<? super T> comparator) {
+        // runs[i] is a sorted run of 2^i nodes, or null; every run in it precedes the nodes not yet taken.
+        ObjectNode[] runs = new ObjectNode[64];
+        int top = 0;
+        while (head != null) {
+            ObjectNode carry = head;
+            head = head.getLink();
+            carry.setLink(null);
+            int i = 0;
+            for (; runs[i] != null; i++) {
+                carry = merge(runs[i], carry, comparator);
+                runs[i] = null;
+            }
+            runs[i] = carry;
+            top = Math.max(top, i + 1);
+        }
+
+        ObjectNode sorted = null;
+        for (int i = 0; i < top; i++) {
+            if (runs[i] != null) {
+                sorted = merge(runs[i], sorted, comparator);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Merge two sorted chains by relinking their nodes. On ties, nodes of
+     * first come before nodes of second.
+     * @return
+     *   the head of the merged chain, or null if both are empty
+     **/
+    @SuppressWarnings("unchecked")
+    public static <T> ObjectNode merge(ObjectNode first, ObjectNode second, Comparator<? super T> comparator) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        ObjectNode head;
+        if (comparator.compare((T) second.getData(), (T) first.getData()) < 0) {
+            head = second;
+            second = second.getLink();
+        } else {
+            head = first;
+            first = first.getLink();
+        }
+        ObjectNode tail = head;
+        while (first != null && second != null) {
+            if (comparator.compare((T) second.getData(), (T) first.getData()) < 0) {
+                tail.setLink(second);
+                second = second.getLink();
+            } else {
+                tail.setLink(first);
+                first = first.getLink();
+            }
+            tail = tail.getLink();
+        }
+        tail.setLink(first != null ? first : second);
+        return head;
+    }
+
+    /**
+     * Merge any number of sorted chains by relinking their nodes, taking the
+     * smallest head from a binary heap each step. On ties, runs earlier in
+     * the array come first.
+     * @param runs
+     *   the heads of the sorted chains; null entries are empty chains. The
+     *   array itself is not changed.
+     * @return
+     *   the head of the merged chain, or null if every run is empty
+     **/
+    @SuppressWarnings("unchecked")
+    public static <T> ObjectNode mergeAll(ObjectNode[] runs, Comparator<? super T> comparator) {
+        // The heap holds each non-empty run's current head, keyed by (data, run index).
+        ObjectNode[] heads = new ObjectNode[runs.length];
+        int[] order = new int[runs.length];
+        int count = 0;
+        for (int r = 0; r < runs.length; r++) {
+            if (runs[r] != null) {
+                heads[count] = runs[r];
+                order[count] = r;
+                siftUp(heads, order, count++, (Comparator<Object>) comparator);
+            }
+        }
+
+        ObjectNode head = null;
+        ObjectNode tail = null;
+        while (count > 0) {
+            ObjectNode smallest = heads[0];
+            if (head == null) {
+                head = smallest;
+            } else {
+                tail.setLink(smallest);
+            }
+            tail = smallest;
+
+            if (count == 1) {
+                break; // The last run is already linked in order.
+            }
+            if (smallest.getLink() != null) {
+                heads[0] = smallest.getLink();
+            } else {
+                count--;
+                heads[0] = heads[count];
+                order[0] = order[count];
+                heads[count] = null;
+            }
+            siftDown(heads, order, count, (Comparator<Object>) comparator);
+        }
+        return head;
+    }
+
+    private static boolean less(ObjectNode[] heads, int[] order, int a, int b, Comparator<Object> comparator) {
+        int c = comparator.compare(heads[a].getData(), heads[b].getData());
+        return c < 0 || (c == 0 && order[a] < order[b]);
+    }
+
+    private static void siftUp(ObjectNode[] heads, int[] order, int i, Comparator<Object> comparator) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(heads, order, i, parent, comparator)) {
+                return;
+            }
+            swap(heads, order, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(ObjectNode[] heads, int[] order, int count, Comparator<Object> comparator) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= count) {
+                return;
+            }
+            if (child + 1 < count && less(heads, order, child + 1, child, comparator)) {
+                child++;
+            }
+            if (!less(heads, order, child, i, comparator)) {
+                return;
+            }
+            swap(heads, order, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(ObjectNode[] heads, int[] order, int a, int b) {
+        ObjectNode node = heads[a];
+        heads[a] = heads[b];
+        heads[b] = node;
+        int run = order[a];
+        order[a] = order[b];
+        order[b] = run;
+    }
+
+    // Sort on the common pool, in pieces of DEFAULT_THRESHOLD nodes.
+    public static <T> ObjectNode parallelSort(ObjectNode head, Comparator<? super T> comparator) {
+        return parallelSort(head, comparator, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Sort a chain in place on a fork-join pool. The chain is cut into pieces
+     * of threshold nodes in one walk; each piece is sorted by a task and
+     * neighbouring sorted pieces are merged as their tasks complete.
+     * @return
+     *   the head of the sorted chain, made of the same nodes
+     * @exception IllegalArgumentException
+     *   Indicates that threshold is not positive.
+     **/
+    public static <T> ObjectNode parallelSort(ObjectNode head, Comparator<? super T> comparator,
+                                              ForkJoinPool pool, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold is not positive");
+        }
+        int length = ObjectNode.listLength(head);
+        if (length <= threshold) {
+            return sort(head, comparator);
+        }
+
+        ObjectNode[] pieces = new ObjectNode[(length + threshold - 1) / threshold];
+        ObjectNode cursor = head;
+        for (int p = 0; p < pieces.length; p++) {
+            pieces[p] = cursor;
+            for (int i = 1; i < threshold && cursor.getLink() != null; i++) {
+                cursor = cursor.getLink();
+            }
+            ObjectNode next = cursor.getLink();
+            cursor.setLink(null);
+            cursor = next;
+        }
+        return pool.invoke(new SortTask<T>(pieces, 0, pieces.length, comparator));
+    }
+
+    // Sorts pieces [from, to) and merges them into one chain.
+    private static final class SortTask<T> extends RecursiveTask<ObjectNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final ObjectNode[] pieces;
+        private final int from;
+        private final int to;
+        private final Comparator<? super T> comparator;
+
+        SortTask(ObjectNode[] pieces, int from, int to, Comparator<? super T> comparator) {
+            this.pieces = pieces;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected ObjectNode compute() {
+            if (to - from == 1) {
+                return sort(pieces[from], comparator);
+            }
+            int mid = (from + to) >>> 1;
+            SortTask<T> left = new SortTask<>(pieces, from, mid, comparator);
+            left.fork();
+            ObjectNode right = new SortTask<>(pieces, mid, to, comparator).compute();
+            return merge(left.join(), right, comparator);
+        }
+    }
+}
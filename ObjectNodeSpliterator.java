@@ -0,0 +1,104 @@
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Spliterator over the data of an ObjectNode chain, so chains can feed
+ * java.util.stream pipelines, parallel ones included. Each spliterator has
+ * its own cursor, so any number can walk the same chain at once.
+ *
+ * A linked chain cannot be cut in the middle without walking to it, so
+ * trySplit copies a batch of leading elements into an array and hands that
+ * off as a sized array spliterator, as the JDK does for iterators. Batches
+ * grow by BATCH_UNIT each split, up to MAX_BATCH, so short chains split
+ * into small pieces and long chains into large ones. The number of elements
+ * is known up front, which makes this spliterator and every split SIZED.
+ *
+ * The chain must not be changed while it is being traversed.
+ **/
+public class ObjectNodeSpliterator implements Spliterator<Object> {
+    public static final int BATCH_UNIT = 1 << 10;
+    public static final int MAX_BATCH = 1 << 25;
+
+    private ObjectNode current;
+    private long remaining;
+    private int batch;
+
+    // A spliterator over a whole chain; the chain is walked once to count it.
+    public ObjectNodeSpliterator(ObjectNode head) {
+        this(head, ObjectNode.listLength(head));
+    }
+
+    /**
+     * A spliterator over the first size nodes from head. SIZED is reported
+     * on trust, so this is only for callers that track their own length,
+     * such as SinglyLinkedList; size must not exceed the chain's length.
+     * @exception IllegalArgumentException
+     *   Indicates that size is negative.
+     **/
+    ObjectNodeSpliterator(ObjectNode head, long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size is negative");
+        }
+        this.current = head;
+        this.remaining = size;
+    }
+
+    // A sequential or parallel stream of a chain's data, in chain order.
+    public static Stream<Object> stream(ObjectNode head, boolean parallel) {
+        return StreamSupport.stream(new ObjectNodeSpliterator(head), parallel);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        if (remaining <= 0 || current == null) {
+            return false;
+        }
+        Object data = current.getData();
+        current = current.getLink();
+        remaining--;
+        action.accept(data);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Object> action) {
+        ObjectNode node = current;
+        long left = remaining;
+        current = null;
+        remaining = 0;
+        for (; left > 0 && node != null; left--) {
+            action.accept(node.getData());
+            node = node.getLink();
+        }
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+        if (remaining <= 1 || current == null) {
+            return null;
+        }
+        int n = (int) Math.min(remaining, Math.min(MAX_BATCH, (long) batch + BATCH_UNIT));
+        Object[] prefix = new Object[n];
+        int copied = 0;
+        for (; copied < n && current != null; copied++) {
+            prefix[copied] = current.getData();
+            current = current.getLink();
+        }
+        batch = copied;
+        remaining -= copied;
+        return Spliterators.spliterator(prefix, 0, copied, ORDERED);
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED;
+    }
+}
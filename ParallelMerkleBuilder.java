@@ -0,0 +1,138 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds Merkle roots on a fork-join pool. Leaves are hashed in parallel, and
+ * then each level's pairwise combines are split across the pool as well. The
+ * roots are identical to MerkleHasher.root, including the rule that an odd
+ * last hash is paired with itself.
+ **/
+public class ParallelMerkleBuilder {
+    // Ranges of at most this many hashes are computed on a single thread.
+    public static final int DEFAULT_THRESHOLD = 2048;
+
+    private final MerkleHasher hashing;
+    private final int hashBytes;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelMerkleBuilder(MerkleHasher hashing) {
+        this(hashing, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public ParallelMerkleBuilder(MerkleHasher hashing, ForkJoinPool pool, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold is not positive");
+        }
+        this.hashing = hashing;
+        this.hashBytes = hashing.digestLength();
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public MerkleHasher getHashing() {
+        return hashing;
+    }
+
+    /**
+     * Hash the UTF-8 bytes of each node's data, as a String, as a leaf and
+     * return the root. The chain is walked once to note where every run of
+     * threshold nodes starts; the runs are then hashed in parallel, each leaf
+     * straight into its slot of the packed leaf level.
+     * @param head
+     *   the head of the chain (which may be null)
+     * @return
+     *   the root, or null if the chain is empty
+     **/
+    public byte[] root(ObjectNode head) {
+        int count = ObjectNode.listLength(head);
+        if (count == 0) {
+            return null;
+        }
+        ObjectNode[] starts = new ObjectNode[(count + threshold - 1) / threshold];
+        ObjectNode cursor = head;
+        for (int i = 0; i < count; i++, cursor = cursor.getLink()) {
+            if (i % threshold == 0) {
+                starts[i / threshold] = cursor;
+            }
+        }
+
+        byte[] hashes = new byte[count * hashBytes];
+        pool.invoke(new RangeTask(0, count, (from, to) -> {
+            ObjectNode node = starts[from / threshold];
+            for (int i = from - from % threshold; i < from; i++) {
+                node = node.getLink();
+            }
+            for (int i = from; i < to; i++, node = node.getLink()) {
+                byte[] data = node.getData().toString().getBytes(StandardCharsets.UTF_8);
+                hashing.hashLeaf(data, 0, data.length, hashes, i * hashBytes);
+            }
+        }));
+        return rootOfHashes(hashes, count);
+    }
+
+    /**
+     * Return the root over count packed leaf hashes.
+     * @return
+     *   the root, or null if count is 0
+     **/
+    public byte[] rootOfHashes(byte[] leaves, int count) {
+        if (count == 0) {
+            return null;
+        }
+        byte[] level = leaves;
+        while (count > 1) {
+            level = nextLevel(level, count);
+            count = (count + 1) / 2;
+        }
+        return java.util.Arrays.copyOf(level, hashBytes);
+    }
+
+    // The level above count packed hashes, with parents computed in parallel.
+    public byte[] nextLevel(byte[] level, int count) {
+        int parents = (count + 1) / 2;
+        if (parents <= threshold) {
+            return hashing.nextLevel(level, count);
+        }
+        byte[] next = new byte[parents * hashBytes];
+        pool.invoke(new RangeTask(0, parents, (from, to) -> {
+            for (int p = from; p < to; p++) {
+                int left = 2 * p * hashBytes;
+                int right = 2 * p + 1 < count ? left + hashBytes : left;
+                hashing.combine(level, left, level, right, next, p * hashBytes);
+            }
+        }));
+        return next;
+    }
+
+    // Work on the items [from, to) of a range.
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    // Splits [from, to) in half until it is no longer than the threshold.
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Computes a Merkle root from leaves supplied one at a time, holding only one
+ * pending subtree hash per level: O(log n) memory for n leaves.
+ *
+ * After n leaves, level k holds a pending hash exactly when bit k of n is
+ * set, the root of the last complete subtree of 2^k leaves. root() then folds
+ * the pending hashes from the bottom up, pairing any level's odd last hash
+ * with itself, which gives the same root as building the tree level by level.
+ **/
+public class StreamingMerkleBuilder {
+    private final MerkleHasher hashing;
+    private final int hashBytes;
+    private byte[][] pending = new byte[8][];
+    private long leafCount;
+    private final byte[] leafHash;
+
+    public StreamingMerkleBuilder(MerkleHasher hashing) {
+        this.hashing = hashing;
+        this.hashBytes = hashing.digestLength();
+        this.leafHash = new byte[hashBytes];
+    }
+
+    public long getLeafCount() {
+        return leafCount;
+    }
+
+    // Add the UTF-8 bytes of text as the next leaf.
+    public void addLeaf(String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        addLeaf(data, 0, data.length);
+    }
+
+    // Add len bytes of data at off as the next leaf.
+    public void addLeaf(byte[] data, int off, int len) {
+        hashing.hashLeaf(data, off, len, leafHash, 0);
+        addLeafHash(leafHash, 0);
+    }
+
+    /**
+     * Add an already computed leaf hash, read from hash at off.
+     **/
+    public void addLeafHash(byte[] hash, int off) {
+        // Carry the new hash up while a finished subtree of the same size is waiting.
+        byte[] carry = new byte[hashBytes];
+        System.arraycopy(hash, off, carry, 0, hashBytes);
+        int level = 0;
+        for (long n = leafCount; (n & 1) != 0; n >>>= 1) {
+            hashing.combine(pending[level], 0, carry, 0, carry, 0);
+            pending[level] = null;
+            level++;
+        }
+        if (level == pending.length) {
+            pending = java.util.Arrays.copyOf(pending, 2 * pending.length);
+        }
+        pending[level] = carry;
+        leafCount++;
+    }
+
+    /**
+     * Return the root of the leaves added so far. More leaves may be added
+     * afterwards.
+     * @return
+     *   the root, or null if no leaves have been added
+     **/
+    public byte[] root() {
+        int top = 63 - Long.numberOfLeadingZeros(leafCount);
+        byte[] carry = null; // Last node of the current level made from trailing leaves
+        for (int level = 0; level <= top; level++) {
+            byte[] node = pending[level];
+            boolean more = level < top; // Another pending subtree lies further up
+            if (node != null && carry != null) {
+                byte[] parent = new byte[hashBytes];
+                hashing.combine(node, 0, carry, 0, parent, 0);
+                carry = parent;
+            } else if (node != null || carry != null) {
+                byte[] only = node != null ? node : carry;
+                if (!more) {
+                    return only.clone(); // The single node left at this level is the root.
+                }
+                // An odd last node is paired with itself.
+                byte[] parent = new byte[hashBytes];
+                hashing.combine(only, 0, only, 0, parent, 0);
+                carry = parent;
+            }
+        }
+        return carry;
+    }
+}
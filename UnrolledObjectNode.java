@@ -0,0 +1,405 @@
+/**
+ * A node of an unrolled linked list of objects. Instead of one element per node,
+ * as in ObjectNode, each node keeps up to capacity element references in its
+ * own Object[]. A list of n elements then costs about n / capacity node
+ * headers and links rather than n nodes, and a traversal reads whole runs of
+ * adjacent references.
+ *
+ * The static list operations mirror ObjectNode's. Positions count elements,
+ * not nodes, starting from 1 at the head; a node holding no elements is
+ * allowed and is simply skipped. insert and remove keep every node at least
+ * half full when they can, by splitting a full node in two and by refilling
+ * a node that falls under half from the node after it.
+ **/
+public class UnrolledObjectNode
+{
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] data;
+    private int size;
+    private UnrolledObjectNode link;
+
+
+    /**
+     * Initialize an empty node with room for DEFAULT_CAPACITY elements and no
+     * node after it.
+     **/
+    public UnrolledObjectNode( )
+    {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Initialize an empty node with a specified capacity and link to the next
+     * node.
+     * @param capacity
+     *   the most elements this node can hold, at least 2
+     * @param initialLink
+     *   a reference to the node after this new node--this reference may be null
+     *   to indicate that there is no node after this new node.
+     * @exception IllegalArgumentException
+     *   Indicates that capacity is less than 2, too small to split.
+     **/
+    public UnrolledObjectNode(int capacity, UnrolledObjectNode initialLink)
+    {
+        if (capacity < 2)
+            throw new IllegalArgumentException("capacity is less than 2");
+        data = new Object[capacity];
+        link = initialLink;
+    }
+
+
+    /**
+     * Accessor method to get the number of elements in this node.
+     * @return
+     *   the number of elements in this node, between 0 and capacity()
+     **/
+    public int size( )
+    {
+        return size;
+    }
+
+    public int capacity( )
+    {
+        return data.length;
+    }
+
+    /**
+     * Accessor method to get one element from this node.
+     * @param index
+     *   the element's index within this node, from 0
+     * @return
+     *   the element at index
+     * @exception IndexOutOfBoundsException
+     *   Indicates that index is not below size().
+     **/
+    public Object getData(int index)
+    {
+        java.util.Objects.checkIndex(index, size);
+        return data[index];
+    }
+
+    /**
+     * Modification method to replace one element of this node.
+     * @param index
+     *   the element's index within this node, from 0
+     * @param newData
+     *   the new value of the element
+     * @exception IndexOutOfBoundsException
+     *   Indicates that index is not below size().
+     **/
+    public void setData(int index, Object newData)
+    {
+        java.util.Objects.checkIndex(index, size);
+        data[index] = newData;
+    }
+
+    public UnrolledObjectNode getLink( )
+    {
+        return link;
+    }
+
+    public void setLink(UnrolledObjectNode newLink)
+    {
+        link = newLink;
+    }
+
+
+    /**
+     * Modification method to add an element after the last element of this
+     * node, or at the start of a new node after this one if this node is full.
+     * Appending to the tail node this way builds a list with every node full.
+     * @param item
+     *   the element to add
+     * @return
+     *   the node now holding item: this node, or the new node after it
+     * @exception OutOfMemoryError
+     *   Indicates that there is insufficient memory for a new node.
+     **/
+    public UnrolledObjectNode append(Object item)
+    {
+        if (size == data.length)
+        {
+            link = new UnrolledObjectNode(data.length, link);
+            return link.append(item);
+        }
+        data[size++] = item;
+        return this;
+    }
+
+    /**
+     * Modification method to insert an element into this node, moving the
+     * elements at and after index one place along. A full node is first split,
+     * its upper half moving to a new node after it.
+     * @param index
+     *   where item goes within this node, from 0 to size()
+     * @param item
+     *   the element to insert
+     * @return
+     *   the node now holding item: this node, or the new node after it
+     * @exception IndexOutOfBoundsException
+     *   Indicates that index is greater than size().
+     **/
+    public UnrolledObjectNode insert(int index, Object item)
+    {
+        java.util.Objects.checkIndex(index, size + 1);
+        if (size == data.length)
+        {
+            int half = size / 2;
+            UnrolledObjectNode upper = new UnrolledObjectNode(data.length, link);
+            System.arraycopy(data, half, upper.data, 0, size - half);
+            upper.size = size - half;
+            size = half;
+            link = upper;
+            if (index > half)
+                return upper.insert(index - half, item);
+        }
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = item;
+        size++;
+        return this;
+    }
+
+    /**
+     * Modification method to remove one element of this node. If this node is
+     * then under half full, elements are moved over from the node after it,
+     * and that node is unlinked if it empties.
+     * @param index
+     *   the element's index within this node, from 0
+     * @return
+     *   the element that was removed
+     * @exception IndexOutOfBoundsException
+     *   Indicates that index is not below size().
+     **/
+    public Object remove(int index)
+    {
+        java.util.Objects.checkIndex(index, size);
+        Object removed = data[index];
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        data[--size] = null;
+
+        if (size < data.length / 2 && link != null)
+        {
+            // Take the whole next node if it fits, otherwise enough of it to even the two out.
+            int moved = size + link.size <= data.length ? link.size : (link.size - size + 1) / 2;
+            System.arraycopy(link.data, 0, data, size, moved);
+            System.arraycopy(link.data, moved, link.data, 0, link.size - moved);
+            java.util.Arrays.fill(link.data, link.size - moved, link.size, null);
+            size += moved;
+            link.size -= moved;
+            if (link.size == 0)
+                link = link.link;
+        }
+        return removed;
+    }
+
+
+    /**
+     * Build a list holding a copy of an array's elements, in order.
+     * @param values
+     *   the elements of the new list
+     * @param capacity
+     *   the capacity of each node; every node but the last is full
+     * @return
+     *   the head reference for the new list, or null if values is empty
+     * @exception IllegalArgumentException
+     *   Indicates that capacity is less than 2, too small to split.
+     **/
+    public static UnrolledObjectNode fromArray(Object[ ] values, int capacity)
+    {
+        if (capacity < 2)
+            throw new IllegalArgumentException("capacity is less than 2");
+        UnrolledObjectNode head = null;
+        UnrolledObjectNode tail = null;
+        for (int start = 0; start < values.length; start += capacity)
+        {
+            UnrolledObjectNode node = new UnrolledObjectNode(capacity, null);
+            node.size = Math.min(capacity, values.length - start);
+            System.arraycopy(values, start, node.data, 0, node.size);
+            if (head == null)
+                head = node;
+            else
+                tail.link = node;
+            tail = node;
+        }
+        return head;
+    }
+
+    /**
+     * Copy the elements of a list into an array.
+     * @param head
+     *   the head reference for a linked list (which may be an empty list
+     *   with a null head)
+     * @return
+     *   a new array with the list's elements, in order
+     **/
+    public static Object[ ] listToArray(UnrolledObjectNode head)
+    {
+        Object[ ] answer = new Object[listLength(head)];
+        int filled = 0;
+        for (UnrolledObjectNode cursor = head; cursor != null; cursor = cursor.link)
+        {
+            System.arraycopy(cursor.data, 0, answer, filled, cursor.size);
+            filled += cursor.size;
+        }
+        return answer;
+    }
+
+
+    /**
+     * Copy a list. Each node of the copy has the same capacity and elements
+     * as the node it was copied from.
+     * @param source
+     *   the head of a linked list that will be copied (which may be
+     *   an empty list in where source is null)
+     * @return
+     *   the head reference for the copy
+     * @exception OutOfMemoryError
+     *   Indicates that there is insufficient memory for the new list.
+     **/
+    public static UnrolledObjectNode listCopy(UnrolledObjectNode source)
+    {
+        if (source == null)
+            return null;
+        return listPart(source, null)[0];
+    }
+
+
+    /**
+     * Compute the number of elements in a linked list, visiting each node once.
+     * @param head
+     *   the head reference for a linked list (which may be an empty list
+     *   with a null head)
+     * @return
+     *   the number of elements in the list with the given head
+     * @note
+     *   A wrong answer occurs for lists longer than Int.MAX_VALUE.
+     **/
+    public static int listLength(UnrolledObjectNode head)
+    {
+        int answer = 0;
+        for (UnrolledObjectNode cursor = head; cursor != null; cursor = cursor.link)
+            answer += cursor.size;
+        return answer;
+    }
+
+
+    /**
+     * Copy part of a list, providing a head and tail reference for the new copy.
+     * @precondition
+     *   start is a non-null reference to a node, and end is a node on the same
+     *   list at or after start, or null to copy through the end of the list.
+     * @return
+     *   an array where the [0] component is a head reference for the copy and
+     *   the [1] component is a tail reference for the copy
+     * @param start
+     *   first node to copy
+     * @param end
+     *   final node to copy
+     * @exception IllegalArgumentException
+     *   Indicates that end is not null and not on the list after start.
+     * @exception NullPointerException
+     *   Indicates that start is null.
+     * @exception OutOfMemoryError
+     *   Indicates that there is insufficient memory for the new list.
+     **/
+    public static UnrolledObjectNode[ ] listPart(UnrolledObjectNode start, UnrolledObjectNode end)
+    {
+        UnrolledObjectNode copyHead = new UnrolledObjectNode(start.data.length, null);
+        UnrolledObjectNode copyTail = copyHead;
+        UnrolledObjectNode cursor = start;
+        while (true)
+        {
+            System.arraycopy(cursor.data, 0, copyTail.data, 0, cursor.size);
+            copyTail.size = cursor.size;
+            if (cursor == end || (end == null && cursor.link == null))
+                break;
+            cursor = cursor.link;
+            if (cursor == null)
+                throw new IllegalArgumentException("end node was not found on the list");
+            copyTail.link = new UnrolledObjectNode(cursor.data.length, null);
+            copyTail = copyTail.link;
+        }
+
+        UnrolledObjectNode[ ] answer = new UnrolledObjectNode[2];
+        answer[0] = copyHead;
+        answer[1] = copyTail;
+        return answer;
+    }
+
+
+    /**
+     * Find the node holding the element at a specified position in a linked list.
+     * @param head
+     *   the head reference for a linked list (which may be an empty list in
+     *   which case the head is null)
+     * @param position
+     *   an element number; the head's first element is position 1
+     * @return
+     *   the node holding that element, or null if the list is too short
+     * @exception IllegalArgumentException
+     *   Indicates that position is not positive.
+     **/
+    public static UnrolledObjectNode listPosition(UnrolledObjectNode head, int position)
+    {
+        if (position <= 0)
+            throw new IllegalArgumentException("position is not positive");
+
+        UnrolledObjectNode cursor = head;
+        while (cursor != null && position > cursor.size)
+        {
+            position -= cursor.size;
+            cursor = cursor.link;
+        }
+        return cursor;
+    }
+
+    /**
+     * Get the element at a specified position in a linked list.
+     * @param head
+     *   the head reference for a linked list
+     * @param position
+     *   an element number; the head's first element is position 1
+     * @return
+     *   the element at that position
+     * @exception IllegalArgumentException
+     *   Indicates that position is not positive.
+     * @exception IndexOutOfBoundsException
+     *   Indicates that the list is shorter than position.
+     **/
+    public static Object listGet(UnrolledObjectNode head, int position)
+    {
+        if (position <= 0)
+            throw new IllegalArgumentException("position is not positive");
+
+        for (UnrolledObjectNode cursor = head; cursor != null; cursor = cursor.link)
+        {
+            if (position <= cursor.size)
+                return cursor.data[position - 1];
+            position -= cursor.size;
+        }
+        throw new IndexOutOfBoundsException("the list is too short");
+    }
+
+
+    /**
+     * Search for a particular piece of data in a linked list. As in
+     * ObjectNode.listSearch, elements are compared with ==.
+     * @param head
+     *   the head reference for a linked list (which may be an empty list in
+     *   which case the head is null)
+     * @param target
+     *   a piece of data to search for
+     * @return
+     *   the first node that contains target, or null if there is none
+     **/
+    public static UnrolledObjectNode listSearch(UnrolledObjectNode head, Object target)
+    {
+        for (UnrolledObjectNode cursor = head; cursor != null; cursor = cursor.link)
+            for (int i = 0; i < cursor.size; i++)
+                if (cursor.data[i] == target)
+                    return cursor;
+
+        return null;
+    }
+}